@@ -1,701 +1,6217 @@
-/****************************
-    Cpu scheduling algorithms
-*****************************/
-
-
-
-import java.util.*;
-
-class Process {
-  protected String name;
-  protected int arrivalTime;
-  protected int burstTime;
-  protected int priority;
-
-  public Process(String name, int arrivalTime, int burstTime, int priority) {
-    this.name = name;
-    this.arrivalTime = arrivalTime;
-    this.burstTime = burstTime;
-    this.priority = priority;
-  }
-
-  public Process(Process process) {
-    this.name = process.name;
-    this.arrivalTime = process.arrivalTime;
-    this.burstTime = process.burstTime;
-    this.priority = process.priority;
-  }
-
-  public String getName() {
-    return name;
-  }
-
-  public int getArrivalTime() {
-    return arrivalTime;
-  }
-
-  public int getBurstTime() {
-    return burstTime;
-  }
-
-  public void setBurstTime(int burstTime) {
-    this.burstTime = burstTime;
-  }
-
-  public void setPriority(int priority) {
-    this.priority = priority;
-  }
-
-  public void decreaseBurstTime() {
-    if (this.burstTime > 0) {
-      this.burstTime -= 1;
-    }
-  }
-
-  public void increasePriority() {
-    if (this.priority > 1) {
-      this.priority -= 1;
-    }
-  }
-
-  public boolean isFinished() {
-    return this.burstTime == 0;
-  }
-
-  @Override
-  public String toString() {
-    return this.name + " " + this.arrivalTime + " " + this.burstTime + " " + this.priority;
-  }
-
-}
-
-class SjfProcess extends Process implements Comparable<SjfProcess> {
-
-  public SjfProcess(Process process) {
-    super(process);
-  }
-
-  @Override
-  public int compareTo(SjfProcess p) {
-    int compare = Integer.compare(this.burstTime, p.burstTime);
-    if (compare == 0) {
-      return Integer.compare(this.arrivalTime, p.arrivalTime);
-    }
-    return compare;
-  }
-}
-
-class SrtfProcess extends Process implements Comparable<SrtfProcess>  {
-
-  public SrtfProcess(Process process) {
-    super(process);
-  }
-
-  @Override
-  public int compareTo(SrtfProcess p) {
-    if (this.priority == 1 && p.priority != 1) {
-      return -1;
-    } else if (this.priority != 1 && p.priority == 1) {
-      return 1;
-    }
-    int compare = Integer.compare(this.burstTime, p.burstTime);
-    if (compare == 0) {
-      return Integer.compare(this.arrivalTime, p.arrivalTime);
-    }
-    return compare;
-  }
-}
-
-class PriorityProcess extends Process implements Comparable<PriorityProcess> {
-
-  public PriorityProcess(Process process) {
-    super(process);
-  }
-
-  @Override
-  public int compareTo(PriorityProcess p) {
-    int compare = Integer.compare(this.priority, p.priority);
-    if (compare == 0) {
-      return Integer.compare(this.arrivalTime, p.arrivalTime);
-    }
-    return compare;
-  }
-
-}
-
-class RoundRobinProcess extends Process implements Comparable<RoundRobinProcess> {
-  private int quantum;
-  private int ag;
-
-  private void setAgFactor() {
-    int random = (int) (Math.random() * 20);
-    if (random < 10) {
-      this.ag = random + this.arrivalTime + this.burstTime;
-    } else if (random > 10) {
-      this.ag = 10 + this.arrivalTime + this.burstTime;
-    } else {
-      this.ag = priority + this.arrivalTime + this.burstTime;
-    }
-  }
-
-  public RoundRobinProcess(Process process, int quantum) {
-    super(process);
-    this.quantum = quantum;
-    setAgFactor();
-  }
-
-  public int getQuantum() {
-    return quantum;
-  }
-
-  public void setQuantum(int quantum) {
-    this.quantum = quantum;
-  }
-
-  @Override
-  public int compareTo(RoundRobinProcess o) {
-    int compare = Integer.compare(this.ag, o.ag);
-    if (compare == 0) {
-      return Integer.compare(this.arrivalTime, o.arrivalTime);
-    }
-    return compare;
-  }
-
-}
-
-class SchedulerFactory {
-
-  public static ArrayList<Scheduler> getAllSchedulers(int quantum, int contextSwitchingTime) {
-    ArrayList<Scheduler> schedulers = new ArrayList<>();
-    schedulers.add(new SjfScheduler(contextSwitchingTime));
-    schedulers.add(new SrtfScheduler());
-    schedulers.add(new PriorityScheduler());
-    schedulers.add(new RoundRobinScheduler(quantum));
-    return schedulers;
-  }
-
-}
-
-abstract class Scheduler {
-  protected TreeMap<Integer, ArrayList<Process>> arrivalTimeProcesses; // ArrivalTime -> Processes
-
-  public Scheduler() {
-    arrivalTimeProcesses = new TreeMap<>();
-  }
-
-  public void setProcesses(ArrayList<Process> processes) {
-    arrivalTimeProcesses = new TreeMap<>();
-    for (Process process : processes) {
-      int arrivalTime = process.getArrivalTime();
-      arrivalTimeProcesses.computeIfAbsent(arrivalTime, k -> new ArrayList<>());
-      arrivalTimeProcesses.get(arrivalTime).add(process);
-    }
-  }
-
-  public abstract ArrayList<Cluster> schedule();
-}
-
-class SjfScheduler extends Scheduler {
-  private PriorityQueue<SjfProcess> readyProcesses;
-  private int contextSwitchingTime;
-
-  public SjfScheduler(int contextSwitchingTime) {
-    super();
-    this.contextSwitchingTime = contextSwitchingTime;
-    this.readyProcesses = new PriorityQueue<>();
-  }
-
-  private void addArrivedProcessesAt(int time) {
-    if (arrivalTimeProcesses.containsKey(time)) {
-      ArrayList<Process> li = arrivalTimeProcesses.get(time);
-      for (Process process : li) {
-        SjfProcess sjfProcess = new SjfProcess(process);
-        readyProcesses.add(sjfProcess);
-      }
-    }
-  }
-
-  private boolean isAllProcessesFinished(int t, SjfProcess runningProcess) {
-    int lastArrivalTime = arrivalTimeProcesses.lastKey();
-    return t > lastArrivalTime && readyProcesses.isEmpty() && runningProcess == null;
-  }
-
-  @Override
-  public ArrayList<Cluster> schedule() {
-    ArrayList<Cluster> clusters = new ArrayList<>();
-    Cluster cluster = null;
-    SjfProcess runningProcess = null;
-    int t = -1;
-    // Run all processes
-    while (!isAllProcessesFinished(t, runningProcess)) {
-      t += 1;
-      if (runningProcess != null) {
-        runningProcess.decreaseBurstTime();
-        if (runningProcess.isFinished()) {
-          runningProcess = null;
-          cluster.setEndTime(t);
-          clusters.add(cluster);
-        }
-      }
-      addArrivedProcessesAt(t);
-      if (runningProcess == null && !readyProcesses.isEmpty()) {
-        runningProcess = readyProcesses.poll(); // runningProcess = shortestProcess
-        for (int i = 0; i < contextSwitchingTime; ++i) {
-          t += 1;
-          addArrivedProcessesAt(t);
-        }
-        cluster = new Cluster(runningProcess, t);
-      }
-    }
-    return clusters;
-  }
-
-}
-
-class SrtfScheduler extends Scheduler {
-  private PriorityQueue<SrtfProcess> readyProcesses;
-  private static final int AGE = 20;
-
-  public SrtfScheduler() {
-    super();
-    readyProcesses = new PriorityQueue<>();
-  }
-
-  private boolean addArrivedProcessesAt(int time) {
-    if (arrivalTimeProcesses.containsKey(time)) {
-      ArrayList<Process> li = arrivalTimeProcesses.get(time);
-      for (Process process : li) {
-        SrtfProcess srtfProcess = new SrtfProcess(process);
-        srtfProcess.setPriority(10);
-        readyProcesses.add(srtfProcess);
-      }
-      return true;
-    }
-    return false;
-  }
-
-  private boolean isAllProcessesFinished(int t, SrtfProcess runningProcess) {
-    int lastArrivalTime = arrivalTimeProcesses.lastKey();
-    return t > lastArrivalTime && readyProcesses.isEmpty() && runningProcess == null;
-  }
-
-  private void increaseOldProcessesPriority(int t) {
-    ArrayList<SrtfProcess> temp = new ArrayList<>();
-    readyProcesses.forEach((process) -> {
-      int diff = t - process.getArrivalTime();
-      if (diff % AGE == 0 && diff != 0) {
-        process.increasePriority();
-        temp.add(process);
-      }
-    });
-    readyProcesses.removeAll(temp);
-    readyProcesses.addAll(temp);
-  }
-
-  public ArrayList<Cluster> schedule() {
-    ArrayList<Cluster> clusters = new ArrayList<>();
-    Cluster cluster = null;
-    SrtfProcess runningProcess = null;
-    int t = -1;
-    // Run all processes
-    while (!isAllProcessesFinished(t, runningProcess)) {
-      t += 1;
-      increaseOldProcessesPriority(t);
-      if (runningProcess != null) {
-        runningProcess.decreaseBurstTime();
-        if (runningProcess.isFinished()) {
-          runningProcess = null;
-          cluster.setEndTime(t);
-          clusters.add(cluster);
-        }
-      }
-      boolean isNewProcessesArrived = addArrivedProcessesAt(t);
-      if (isNewProcessesArrived || runningProcess == null) {
-        if (readyProcesses.isEmpty()) { continue; }
-        if (runningProcess == null) {
-          runningProcess = readyProcesses.poll(); // runningProcess = shortestProcess
-          cluster = new Cluster(runningProcess, t);
-        } else if (readyProcesses.peek().compareTo(runningProcess) < 0) {
-          SrtfProcess shortestProcess = readyProcesses.poll();
-          readyProcesses.add(runningProcess);
-          runningProcess = shortestProcess;
-          // Cluster part
-          cluster.setEndTime(t);
-          clusters.add(cluster);
-          cluster = new Cluster(runningProcess, t);
-        }
-      }
-    }
-    return clusters;
-  }
-
-}
-
-class PriorityScheduler extends Scheduler {
-  private PriorityQueue<PriorityProcess> readyProcesses;
-
-  private static final int AGE = 30;
-
-  public PriorityScheduler() {
-    super();
-    readyProcesses = new PriorityQueue<>();
-  }
-
-  private void addArrivedProcessesAt(int time) {
-    if (arrivalTimeProcesses.containsKey(time)) {
-      ArrayList<Process> li = arrivalTimeProcesses.get(time);
-      for (Process process : li) {
-        PriorityProcess priorityProcess = new PriorityProcess(process);
-        readyProcesses.add(priorityProcess);
-      }
-    }
-  }
-
-  private void increaseOldProcessesPriority(int t) {
-    ArrayList<PriorityProcess> temp = new ArrayList<>();
-    readyProcesses.forEach((process) -> {
-      int diff = t - process.getArrivalTime();
-      if (diff % AGE == 0 && diff != 0) {
-        process.increasePriority();
-        temp.add(process);
-      }
-    });
-    readyProcesses.removeAll(temp);
-    readyProcesses.addAll(temp);
-  }
-
-  public ArrayList<Cluster> schedule() {
-    int lastArrivalTime = arrivalTimeProcesses.lastKey();
-    Process runningProcess = null;
-    ArrayList<Cluster> chart = new ArrayList<>();
-    Cluster cluster = null;
-    for (int t = 0; ; ++t) {
-      // Stop if there is no process to run
-      if (t > lastArrivalTime && readyProcesses.isEmpty() && runningProcess == null) {
-        break;
-      }
-      // Process the current process
-      if (runningProcess != null) {
-        runningProcess.decreaseBurstTime();
-        if (runningProcess.isFinished()) {
-          cluster.setEndTime(t);
-          chart.add(cluster);
-          runningProcess = null;
-        }
-      }
-      increaseOldProcessesPriority(t);
-      addArrivedProcessesAt(t);
-      // Run new process if there is no running process
-      if (runningProcess == null) {
-        runningProcess = readyProcesses.poll();
-        cluster = new Cluster(runningProcess, t);
-      }
-    }
-    return chart;
-  }
-
-}
-
-class RoundRobinScheduler extends Scheduler {
-  private LinkedList<RoundRobinProcess> readyProcesses;
-  private LinkedList<RoundRobinProcess> dieProcesses;
-  private PriorityQueue<RoundRobinProcess> minAgProcesses;
-  private int initialQuantum;
-
-  public RoundRobinScheduler(int quantum) {
-    super();
-    initialQuantum = quantum;
-    readyProcesses = new LinkedList<>();
-    dieProcesses = new LinkedList<>();
-    minAgProcesses = new PriorityQueue<>();
-  }
-
-  private void addArrivedProcessesAt(int time) {
-    if (arrivalTimeProcesses.containsKey(time)) {
-      ArrayList<Process> li = arrivalTimeProcesses.get(time);
-      for (Process process : li) {
-        RoundRobinProcess roundRobinProcess = new RoundRobinProcess(process, initialQuantum);
-        readyProcesses.add(roundRobinProcess);
-        minAgProcesses.add(roundRobinProcess);
-      }
-    }
-  }
-
-  private boolean isAllProcessesFinished(int t, RoundRobinProcess runningProcess) {
-    int lastArrivalTime = arrivalTimeProcesses.lastKey();
-    return t > lastArrivalTime && readyProcesses.isEmpty() && runningProcess == null;
-  }
-
-  private double getMeanOfQuantum() {
-    int sum = 0;
-    for (RoundRobinProcess process : readyProcesses) {
-      sum += process.getQuantum();
-    }
-    return sum / (double) readyProcesses.size();
-  }
-
-  private void finishRunningProcess(RoundRobinProcess runningProcess) {
-    if (runningProcess == null) { return; }
-    runningProcess.setQuantum(0);
-    readyProcesses.remove(runningProcess);
-    minAgProcesses.remove(runningProcess);
-    dieProcesses.add(runningProcess);
-  }
-
-  public ArrayList<Cluster> schedule() {
-    ArrayList<Cluster> clusters = new ArrayList<>();
-    ClusterQ cluster = null;
-    RoundRobinProcess runningProcess = null;
-    int t = -1;
-    // Stand on the first process
-    while (runningProcess == null) {
-      addArrivedProcessesAt(++t);
-      runningProcess = minAgProcesses.peek();
-      readyProcesses.remove(runningProcess);
-    }
-    // Run all processes
-    while (!isAllProcessesFinished(t, runningProcess)) {
-      // Cluster part
-      if (cluster != null) {
-        cluster.setEndTime(t);
-        clusters.add(cluster);
-      }
-      cluster = new ClusterQ(runningProcess, t, runningProcess.getQuantum());
-      int cnt = 0;
-      // Non-Preemptive part
-      for (; cnt < Math.ceil(runningProcess.getQuantum() / 2.0); ++cnt) {
-        t += 1;
-        addArrivedProcessesAt(t);
-        runningProcess.decreaseBurstTime();
-        if (runningProcess.isFinished()) {
-          finishRunningProcess(runningProcess);
-          runningProcess = readyProcesses.poll();
-          cluster.setEndQ(0);
-          cnt = -1;
-          break;
-        }
-      }
-      if (cnt == -1) { continue; }
-      // Preemptive part
-      for (; cnt < runningProcess.getQuantum(); ++cnt) {
-        if (minAgProcesses.peek().compareTo(runningProcess) < 0) {
-          int newQuntum = (int) Math.ceil(2 * runningProcess.getQuantum() - cnt);
-          runningProcess.setQuantum(newQuntum);
-          readyProcesses.add(runningProcess);
-          runningProcess = minAgProcesses.peek();
-          readyProcesses.remove(runningProcess);
-          cluster.setEndQ(newQuntum);
-          cnt = -1;
-          break;
-        }
-        t += 1;
-        addArrivedProcessesAt(t);
-        runningProcess.decreaseBurstTime();
-        if (runningProcess.isFinished()) {
-          finishRunningProcess(runningProcess);
-          runningProcess = readyProcesses.poll();
-          cluster.setEndQ(0);
-          cnt = -1;
-          break;
-        }
-      }
-      if (cnt == -1) { continue; }
-      readyProcesses.add(runningProcess);
-      int newQuntum = runningProcess.getQuantum() + (int) Math.ceil(0.1 * getMeanOfQuantum());
-      runningProcess.setQuantum(newQuntum);
-      runningProcess = readyProcesses.poll();
-      cluster.setEndQ(newQuntum);
-    }
-    cluster.setEndTime(t);
-    clusters.add(cluster);
-    return clusters;
-  }
-
-}
-
-class Cluster {
-  protected Process process;
-  protected int startTime;
-  protected int endTime;
-
-  public Cluster(Process process, int startTime) {
-    this.process = process;
-    this.startTime = startTime;
-    this.endTime = -1;
-  }
-
-  public Process getProcess() {
-    return process;
-  }
-
-  public int getEndTime() {
-    return endTime;
-  }
-
-  public void setEndTime(int endTime) {
-    this.endTime = endTime;
-  }
-
-  public int getTurnaroundTime() {
-    return this.endTime - this.startTime;
-  }
-
-  @Override
-  public String toString() {
-    StringBuilder sb = new StringBuilder();
-    sb.append('|');
-    sb.append(startTime);
-    // append half turnaround spaces
-    for (int i = 0; i < Math.ceil(getTurnaroundTime() / 2.0); i++) {
-      sb.append(" ");
-    }
-    sb.append(process.getName());
-    // append the remaining spaces
-    for (int i = 0; i < Math.ceil(getTurnaroundTime() / 2.0); i++) {
-      sb.append(" ");
-    }
-    sb.append(endTime);
-    sb.append('|');
-    return sb.toString();
-  }
-
-}
-
-class ClusterQ extends Cluster {
-  private int startQ;
-  private int endQ;
-
-  public ClusterQ(Process p, int startTime, int startQ) {
-    super(p, startTime);
-    this.startQ = startQ;
-    this.endQ = -1;
-  }
-
-  public void setEndQ(int endQ) {
-    this.endQ = endQ;
-  }
-
-  @Override
-  public String toString() {
-    StringBuilder sb = new StringBuilder();
-    sb.append('|');
-    sb.append(startTime);
-    // append half turnaround spaces
-    for (int i = 0; i < Math.ceil(getTurnaroundTime() / 2.0); i++) {
-      sb.append(" ");
-    }
-    sb.append(startQ).append("->").append(process.getName()).append("->").append(endQ);
-    // append the remaining spaces
-    for (int i = 0; i < Math.ceil(getTurnaroundTime() / 2.0); i++) {
-      sb.append(" ");
-    }
-    sb.append(endTime);
-    sb.append('|');
-    return sb.toString();
-  }
-}
-
-class Chart {
-  private ArrayList<Cluster> clusters;
-  private Map<Process, Integer> turnAroundTime;
-  private Map<Process, Integer> waitingTime;
-
-  public Chart(ArrayList<Cluster> clusters) {
-    this.clusters = clusters;
-    this.turnAroundTime = new HashMap<>();
-    this.waitingTime = new HashMap<>();
-    HashMap<Process, Cluster> processClusterMap = new HashMap<>();
-    for (Cluster cluster : clusters) {
-      Process process = cluster.getProcess();
-      process.setBurstTime(process.getBurstTime() + cluster.getTurnaroundTime()); // recompute burst time
-      processClusterMap.putIfAbsent(process, new Cluster(process, process.getArrivalTime()));
-      processClusterMap.get(process).setEndTime(cluster.getEndTime());
-    }
-    for (Cluster processCluster : processClusterMap.values()) {
-      Process process = processCluster.getProcess();
-      this.turnAroundTime.put(process, processCluster.getTurnaroundTime());
-      this.waitingTime.put(process, processCluster.getTurnaroundTime() - process.getBurstTime());
-    }
-  }
-
-  public double getAvgTurnAroundTime() {
-    double sum = 0;
-    for (int turnAroundTime : this.turnAroundTime.values()) {
-      sum += turnAroundTime;
-    }
-    return sum / this.turnAroundTime.size();
-  }
-
-  public double getAvgWaitingTime() {
-    double sum = 0;
-    for (int waitingTime : this.waitingTime.values()) {
-      sum += waitingTime;
-    }
-    return sum / this.waitingTime.size();
-  }
-
-  public void print() {
-    for (Cluster cluster : clusters) {
-      System.out.print(cluster);
-    }
-    System.out.println();
-    System.out.println("Average turnaround time: " + getAvgTurnAroundTime());
-    System.out.println("Average waiting time: " + getAvgWaitingTime());
-    System.out.println("Turnaround time:");
-    for (var entry : turnAroundTime.entrySet()) {
-      System.out.println(entry.getKey().getName() + ": " + entry.getValue());
-    }
-    System.out.println("Waiting time:");
-    for (var entry : waitingTime.entrySet()) {
-      System.out.println(entry.getKey().getName() + ": " + entry.getValue());
-    }
-    System.out.println("====================================");
-  }
-
-}
-
-public class Main {
-  private static Scanner in = new Scanner(System.in);
-  private static int IntInput(String msg) {
-    System.out.println(msg);
-    return in.nextInt();
-  }
-
-  private static String StringInput(String msg) {
-    System.out.println(msg);
-    return in.next();
-  }
-
-  public static void main(String[] args) {
-    int n = IntInput("Number of processes: ");
-    int q = IntInput("Round Robin Time quantum: ");
-    int c = IntInput("Context Switching Time: ");
-    ArrayList<Process> processes = new ArrayList<>();
-    for (int i = 0; i < n; ++i) {
-      System.out.println("Enter process " + (i + 1) + ":");
-      String name = StringInput("Process name: ");
-      int arrivalTime = IntInput("Arrival time: ");
-      int burstTime = IntInput("Burst time: ");
-      int priority = IntInput("Priority: ");
-      processes.add(new Process(name, arrivalTime, burstTime, priority));
-    }
-//    Test Case
-//    int n = 4;
-//    int q = 4;
-//    int c = 2;
-//    ArrayList<Process> processes = new ArrayList<>();
-//    processes.add(new Process("P1", 0, 17, 4));
-//    processes.add(new Process("P2", 3, 6, 9));
-//    processes.add(new Process("P3", 4, 10, 2));
-//    processes.add(new Process("P4", 29, 4, 8));
-    ArrayList<Scheduler> schedulers = SchedulerFactory.getAllSchedulers(q, c);
-    for (Scheduler scheduler : schedulers) {
-      System.out.println(scheduler.getClass().getSimpleName());
-      scheduler.setProcesses(processes);
-      ArrayList<Cluster> clusters = scheduler.schedule();
-      Chart chart = new Chart(clusters);
-      chart.print();
-    }
-  }
-}
-
+/****************************
+    Cpu scheduling algorithms
+*****************************/
+
+package cpuscheduling;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.management.*;
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+class Process implements Serializable {
+  private static final long serialVersionUID = 1L;
+  protected String name;
+  protected int arrivalTime;
+  protected int burstTime;
+  protected int priority;
+
+  public Process(String name, int arrivalTime, int burstTime, int priority) {
+    this.name = name;
+    this.arrivalTime = arrivalTime;
+    this.burstTime = burstTime;
+    this.priority = priority;
+  }
+
+  public Process(Process process) {
+    this.name = process.name;
+    this.arrivalTime = process.arrivalTime;
+    this.burstTime = process.burstTime;
+    this.priority = process.priority;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getArrivalTime() {
+    return arrivalTime;
+  }
+
+  public int getBurstTime() {
+    return burstTime;
+  }
+
+  public void setBurstTime(int burstTime) {
+    this.burstTime = burstTime;
+  }
+
+  public int getPriority() {
+    return priority;
+  }
+
+  public void setPriority(int priority) {
+    this.priority = priority;
+  }
+
+  public void decreaseBurstTime() {
+    if (this.burstTime > 0) {
+      this.burstTime -= 1;
+    }
+  }
+
+  public void increasePriority() {
+    if (this.priority > 1) {
+      this.priority -= 1;
+    }
+  }
+
+  public boolean isFinished() {
+    return this.burstTime == 0;
+  }
+
+  @Override
+  public String toString() {
+    return this.name + " " + this.arrivalTime + " " + this.burstTime + " " + this.priority;
+  }
+
+}
+
+// Struct-of-arrays table of the live processes of one run, indexed by process id. Ids of finished
+// processes are handed out again, so the table only grows with the number of live processes
+class ProcessTable implements Serializable {
+  private static final long serialVersionUID = 1L;
+  private Process[] processes; // Id -> input process, only used to label the chart
+  private long[] sequences; // Id -> submission number, orders ties the same way whatever the id
+  private int[] arrivalTimes;
+  private int[] burstTimes; // Remaining burst time
+  private int[] priorities;
+  private int[] agFactors;
+  private int[] quantums;
+  private int size; // Ids below size were handed out at least once
+  private int[] freeIds;
+  private int freeCount;
+  private long nextSequence;
+
+  public ProcessTable() {
+    processes = new Process[16];
+    sequences = new long[16];
+    arrivalTimes = new int[16];
+    burstTimes = new int[16];
+    priorities = new int[16];
+    agFactors = new int[16];
+    quantums = new int[16];
+    freeIds = new int[16];
+  }
+
+  public int add(Process process) {
+    return add(process, nextSequence++, process.getArrivalTime(), process.getBurstTime(), process.getPriority());
+  }
+
+  // A process that already ran elsewhere, it keeps its submission number and what is left of its burst
+  public int add(Process process, long sequence, int arrivalTime, int burstTime, int priority) {
+    int id = freeCount > 0 ? freeIds[--freeCount] : newId();
+    processes[id] = process;
+    sequences[id] = sequence;
+    arrivalTimes[id] = arrivalTime;
+    burstTimes[id] = burstTime;
+    priorities[id] = priority;
+    agFactors[id] = 0;
+    quantums[id] = 0;
+    return id;
+  }
+
+  private int newId() {
+    if (size == processes.length) {
+      int capacity = size * 2;
+      processes = Arrays.copyOf(processes, capacity);
+      sequences = Arrays.copyOf(sequences, capacity);
+      arrivalTimes = Arrays.copyOf(arrivalTimes, capacity);
+      burstTimes = Arrays.copyOf(burstTimes, capacity);
+      priorities = Arrays.copyOf(priorities, capacity);
+      agFactors = Arrays.copyOf(agFactors, capacity);
+      quantums = Arrays.copyOf(quantums, capacity);
+      freeIds = Arrays.copyOf(freeIds, capacity);
+    }
+    return size++;
+  }
+
+  // The process finished, its id may be given to a new process
+  public void release(int id) {
+    processes[id] = null;
+    freeIds[freeCount++] = id;
+  }
+
+  public long getSequence(int id) {
+    return sequences[id];
+  }
+
+  // Submission number within the run, unlike the id it is never reused and names the process on the chart
+  public int getPid(int id) {
+    return (int) sequences[id];
+  }
+
+  public Process getProcess(int id) {
+    return processes[id];
+  }
+
+  public int getArrivalTime(int id) {
+    return arrivalTimes[id];
+  }
+
+  public int getBurstTime(int id) {
+    return burstTimes[id];
+  }
+
+  public void setBurstTime(int id, int burstTime) {
+    burstTimes[id] = burstTime;
+  }
+
+  public boolean isFinished(int id) {
+    return burstTimes[id] == 0;
+  }
+
+  public int getPriority(int id) {
+    return priorities[id];
+  }
+
+  public void setPriority(int id, int priority) {
+    priorities[id] = priority;
+  }
+
+  public void increasePriority(int id) {
+    if (priorities[id] > 1) {
+      priorities[id] -= 1;
+    }
+  }
+
+  public int getAgFactor(int id) {
+    return agFactors[id];
+  }
+
+  public void setAgFactor(int id, int agFactor) {
+    agFactors[id] = agFactor;
+  }
+
+  public int getQuantum(int id) {
+    return quantums[id];
+  }
+
+  public void setQuantum(int id, int quantum) {
+    quantums[id] = quantum;
+  }
+
+}
+
+// Binary min-heap of process ids ordered by a primitive key then a tie-breaker, with O(log n) remove and re-key
+class IndexedHeap implements Serializable {
+  private static final long serialVersionUID = 1L;
+  private int[] heap;
+  private int[] positions; // Id -> index in heap, -1 if absent
+  private long[] keys; // Id -> key
+  private long[] ties; // Id -> tie-breaker
+  private int size;
+  private long operationCount; // Adds, polls, removes and updates, only counted with instrumentation on
+
+  public IndexedHeap() {
+    this.heap = new int[16];
+    this.positions = new int[16];
+    this.keys = new long[16];
+    this.ties = new long[16];
+    Arrays.fill(positions, -1);
+  }
+
+  // Order on high first, then on low which must not be negative
+  public static long packKey(int high, int low) {
+    return ((long) high << 32) | low;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean contains(int id) {
+    return id < positions.length && positions[id] != -1;
+  }
+
+  public int peek() {
+    return size == 0 ? -1 : heap[0];
+  }
+
+  // A leaf of the heap, one of the last ids to be polled
+  public int peekLast() {
+    return size == 0 ? -1 : heap[size - 1];
+  }
+
+  public long peekKey() {
+    return keys[heap[0]];
+  }
+
+  public long getKey(int id) {
+    return keys[id];
+  }
+
+  public long getOperationCount() {
+    return operationCount;
+  }
+
+  public void add(int id, long key) {
+    add(id, key, id);
+  }
+
+  public void add(int id, long key, long tie) {
+    if (id >= positions.length) {
+      int oldLength = positions.length;
+      positions = Arrays.copyOf(positions, Math.max(id + 1, oldLength * 2));
+      keys = Arrays.copyOf(keys, positions.length);
+      ties = Arrays.copyOf(ties, positions.length);
+      Arrays.fill(positions, oldLength, positions.length, -1);
+    }
+    if (size == heap.length) {
+      heap = Arrays.copyOf(heap, size * 2);
+    }
+    keys[id] = key;
+    ties[id] = tie;
+    heap[size] = id;
+    siftUp(size++);
+    if (SchedulerCounters.ENABLED) { operationCount += 1; }
+  }
+
+  public int poll() {
+    if (size == 0) { return -1; }
+    if (SchedulerCounters.ENABLED) { operationCount += 1; }
+    int top = heap[0];
+    removeAt(0);
+    return top;
+  }
+
+  public boolean remove(int id) {
+    if (!contains(id)) { return false; }
+    if (SchedulerCounters.ENABLED) { operationCount += 1; }
+    removeAt(positions[id]);
+    return true;
+  }
+
+  // Change the key of a queued id, in any direction
+  public void update(int id, long key) {
+    if (SchedulerCounters.ENABLED) { operationCount += 1; }
+    keys[id] = key;
+    siftUp(positions[id]);
+    siftDown(positions[id]);
+  }
+
+  public void clear() {
+    for (int i = 0; i < size; ++i) {
+      positions[heap[i]] = -1;
+    }
+    size = 0;
+  }
+
+  // New keys for every queued id at once, then the heap is rebuilt bottom up in O(n)
+  public void rekey(IntToLongFunction keyOf) {
+    if (SchedulerCounters.ENABLED) { operationCount += size; }
+    for (int i = 0; i < size; ++i) {
+      keys[heap[i]] = keyOf.applyAsLong(heap[i]);
+    }
+    for (int i = (size >>> 1) - 1; i >= 0; --i) {
+      siftDown(i);
+    }
+  }
+
+  private boolean less(int a, int b) {
+    return keys[a] < keys[b] || (keys[a] == keys[b] && ties[a] < ties[b]);
+  }
+
+  private void removeAt(int i) {
+    positions[heap[i]] = -1;
+    size -= 1;
+    if (i == size) { return; }
+    int last = heap[size];
+    heap[i] = last;
+    siftUp(i);
+    siftDown(positions[last]);
+  }
+
+  private void siftUp(int i) {
+    int id = heap[i];
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (!less(id, heap[parent])) { break; }
+      heap[i] = heap[parent];
+      positions[heap[i]] = i;
+      i = parent;
+    }
+    heap[i] = id;
+    positions[id] = i;
+  }
+
+  private void siftDown(int i) {
+    int id = heap[i];
+    int half = size >>> 1;
+    while (i < half) {
+      int child = 2 * i + 1;
+      if (child + 1 < size && less(heap[child + 1], heap[child])) {
+        child += 1;
+      }
+      if (!less(heap[child], id)) { break; }
+      heap[i] = heap[child];
+      positions[heap[i]] = i;
+      i = child;
+    }
+    heap[i] = id;
+    positions[id] = i;
+  }
+
+}
+
+// Deadline heap holding the next aging moment (every age units after arrival) of each waiting process
+class AgingTimer implements Serializable {
+  private static final long serialVersionUID = 1L;
+  private final int age;
+  private final IndexedHeap dueProcesses; // Keyed on the next aging time
+
+  public AgingTimer(int age) {
+    this.age = age;
+    this.dueProcesses = new IndexedHeap();
+  }
+
+  // Wake the process at the first multiple of age since its arrival that comes after now
+  public void schedule(int id, int arrivalTime, int now) {
+    dueProcesses.add(id, arrivalTime + ((now - arrivalTime) / age + 1) * age);
+  }
+
+  public void cancel(int id) {
+    dueProcesses.remove(id);
+  }
+
+  public long getOperationCount() {
+    return dueProcesses.getOperationCount();
+  }
+
+  public int nextDeadline() {
+    return dueProcesses.isEmpty() ? SchedulerRun.NEVER : (int) dueProcesses.peekKey();
+  }
+
+  // Take one process whose aging moment is t, -1 if there is none left
+  public int pollDue(int t) {
+    if (dueProcesses.isEmpty() || dueProcesses.peekKey() != t) { return -1; }
+    return dueProcesses.poll();
+  }
+
+}
+
+// FIFO of process ids linked through per-id slots, so any id can be unlinked in O(1)
+class IntrusiveQueue implements Serializable {
+  private static final long serialVersionUID = 1L;
+  private static final int ABSENT = -2;
+  private int[] next;
+  private int[] prev; // ABSENT if the id is not queued
+  private int head;
+  private int tail;
+  private int size;
+
+  public IntrusiveQueue() {
+    this.next = new int[16];
+    this.prev = new int[16];
+    Arrays.fill(prev, ABSENT);
+    this.head = -1;
+    this.tail = -1;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean contains(int id) {
+    return id < prev.length && prev[id] != ABSENT;
+  }
+
+  public void add(int id) {
+    if (id >= prev.length) {
+      int oldLength = prev.length;
+      next = Arrays.copyOf(next, Math.max(id + 1, oldLength * 2));
+      prev = Arrays.copyOf(prev, next.length);
+      Arrays.fill(prev, oldLength, prev.length, ABSENT);
+    }
+    prev[id] = tail;
+    next[id] = -1;
+    if (tail == -1) {
+      head = id;
+    } else {
+      next[tail] = id;
+    }
+    tail = id;
+    size += 1;
+  }
+
+  public int peek() {
+    return head;
+  }
+
+  public int peekLast() {
+    return tail;
+  }
+
+  public int poll() {
+    if (size == 0) { return -1; }
+    int first = head;
+    remove(first);
+    return first;
+  }
+
+  public boolean remove(int id) {
+    if (!contains(id)) { return false; }
+    if (prev[id] == -1) {
+      head = next[id];
+    } else {
+      next[prev[id]] = next[id];
+    }
+    if (next[id] == -1) {
+      tail = prev[id];
+    } else {
+      prev[next[id]] = prev[id];
+    }
+    prev[id] = ABSENT;
+    size -= 1;
+    return true;
+  }
+
+  public void clear() {
+    while (size > 0) {
+      poll();
+    }
+  }
+
+}
+
+class SchedulerFactory {
+
+  public static ArrayList<Scheduler> getAllSchedulers(int quantum, int contextSwitchingTime) {
+    return getAllSchedulers(quantum, contextSwitchingTime, AgFactorSource.unseeded());
+  }
+
+  // Only SJF pays for context switches, as the assignment asks
+  public static ArrayList<Scheduler> getAllSchedulers(int quantum, int contextSwitchingTime, AgFactorSource agFactorSource) {
+    return getAllSchedulers(quantum, contextSwitchingTime, agFactorSource, false);
+  }
+
+  public static ArrayList<Scheduler> getAllSchedulers(int quantum, int contextSwitchingTime, AgFactorSource agFactorSource,
+                                                      boolean isSwitchCostForAll) {
+    ArrayList<Scheduler> schedulers = new ArrayList<>();
+    for (int i = 0; i < 4; ++i) {
+      schedulers.add(newScheduler(i, quantum, contextSwitchingTime, agFactorSource, isSwitchCostForAll));
+    }
+    return schedulers;
+  }
+
+  // Every algorithm on cores cpus, a migration between cores costs a context switch
+  public static ArrayList<Scheduler> getAllSchedulers(int quantum, int contextSwitchingTime, AgFactorSource agFactorSource,
+                                                      int cores, LoadBalancing loadBalancing, boolean isWorkStealing) {
+    return getAllSchedulers(quantum, contextSwitchingTime, agFactorSource, cores, loadBalancing, isWorkStealing, false);
+  }
+
+  public static ArrayList<Scheduler> getAllSchedulers(int quantum, int contextSwitchingTime, AgFactorSource agFactorSource,
+                                                      int cores, LoadBalancing loadBalancing, boolean isWorkStealing,
+                                                      boolean isSwitchCostForAll) {
+    if (cores == 1) {
+      return getAllSchedulers(quantum, contextSwitchingTime, agFactorSource, isSwitchCostForAll);
+    }
+    ArrayList<Scheduler> schedulers = new ArrayList<>();
+    for (int i = 0; i < 4; ++i) {
+      schedulers.add(new MultiCoreScheduler(cores,
+          newScheduler(i, quantum, contextSwitchingTime, agFactorSource, isSwitchCostForAll),
+          contextSwitchingTime, loadBalancing, isWorkStealing));
+    }
+    return schedulers;
+  }
+
+  // The built-in policies, then those ServiceLoader finds on the class path
+  public static List<SchedulingPolicy> getPolicies() {
+    ArrayList<SchedulingPolicy> policies = new ArrayList<>();
+    policies.add(new FcfsPolicy());
+    policies.add(new HrrnPolicy());
+    policies.add(new LotteryPolicy());
+    for (SchedulingPolicy policy : ServiceLoader.load(SchedulingPolicy.class)) {
+      policies.add(policy);
+    }
+    return policies;
+  }
+
+  // Comma separated names of MLFQ, CFS or policies, any case, or "all"
+  public static ArrayList<Scheduler> getPolicySchedulers(String names, int contextSwitchingTime, int cores,
+                                                         LoadBalancing loadBalancing, boolean isWorkStealing) {
+    return getPolicySchedulers(names, contextSwitchingTime, cores, loadBalancing, isWorkStealing,
+        MlfqPolicy.DEFAULT_QUANTA, MlfqPolicy.DEFAULT_BOOST_PERIOD);
+  }
+
+  public static ArrayList<Scheduler> getPolicySchedulers(String names, int contextSwitchingTime, int cores,
+                                                         LoadBalancing loadBalancing, boolean isWorkStealing,
+                                                         int[] mlfqQuanta, int mlfqBoostPeriod) {
+    ArrayList<Scheduler> candidates = new ArrayList<>();
+    candidates.add(new PolicyScheduler(new MlfqPolicy(mlfqQuanta, mlfqBoostPeriod), contextSwitchingTime));
+    candidates.add(new PolicyScheduler(new CfsPolicy(), contextSwitchingTime));
+    for (SchedulingPolicy policy : getPolicies()) {
+      candidates.add(new PolicyScheduler(policy, contextSwitchingTime));
+    }
+    ArrayList<Scheduler> schedulers = new ArrayList<>();
+    for (String name : names.split(",")) {
+      boolean isFound = false;
+      for (Scheduler scheduler : candidates) {
+        if (name.equalsIgnoreCase("all") || name.equalsIgnoreCase(scheduler.getName())) {
+          schedulers.add(cores == 1 ? scheduler
+              : new MultiCoreScheduler(cores, scheduler, contextSwitchingTime, loadBalancing, isWorkStealing));
+          isFound = true;
+        }
+      }
+      if (!isFound) {
+        throw new IllegalArgumentException("Unknown policy " + name);
+      }
+    }
+    return schedulers;
+  }
+
+  // SJF, SRTF, Priority then Round Robin
+  private static Scheduler newScheduler(int algorithm, int quantum, int contextSwitchingTime,
+                                        AgFactorSource agFactorSource, boolean isSwitchCostForAll) {
+    int switchCost = isSwitchCostForAll ? contextSwitchingTime : 0;
+    switch (algorithm) {
+      case 0: return new SjfScheduler(contextSwitchingTime);
+      case 1: return new SrtfScheduler(SrtfScheduler.DEFAULT_AGE, switchCost);
+      case 2: return new PriorityScheduler(PriorityScheduler.DEFAULT_AGE, switchCost);
+      default: return new RoundRobinScheduler(quantum, agFactorSource, switchCost);
+    }
+  }
+
+}
+
+// The configuration of an algorithm, immutable once built. Everything a run changes lives in the SchedulerRun
+// it creates, so one instance serves any number of runs, one after the other or at the same time, without
+// locking and without anything left over from a previous run
+abstract class Scheduler implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  protected abstract SchedulerRun newRun();
+
+  public String getName() {
+    return getClass().getSimpleName();
+  }
+
+  // What turning the cpu to another process costs, on every core of a multi-core scheduler
+  public abstract int getContextSwitchingTime();
+
+  // Every parameter its charts depend on, so that two schedulers writing the same bytes give the same chart
+  // of any workload. Bump ResultCache.VERSION when a scheduler writes different ones
+  protected abstract void writeParameters(DataOutput out) throws IOException;
+
+  final void writeConfiguration(DataOutput out) throws IOException {
+    out.writeUTF(getClass().getName());
+    writeParameters(out);
+  }
+
+  // Every run of the same workload gives the same chart
+  public boolean isReproducible() {
+    return true;
+  }
+
+  // Jump from event to event (arrivals, completions, quantum boundaries, aging) instead of ticking
+  public ArrayList<Cluster> schedule(Workload workload) {
+    ArrayList<Cluster> clusters = new ArrayList<>();
+    schedule(workload, clusters::add);
+    return clusters;
+  }
+
+  // Runs the whole workload, handing the clusters to the listener instead of keeping them
+  public void schedule(Workload workload, ClusterListener listener) {
+    SchedulerRun run = start(listener);
+    // Processes arriving before time 0 are never admitted
+    for (ArrayList<Process> li : workload.getArrivalTimeProcesses().tailMap(0, true).values()) {
+      for (Process process : li) {
+        run.submit(process);
+      }
+    }
+    run.finish();
+  }
+
+  // Online mode: start(), then submit() processes to the run as they arrive, then finish() it. Clusters reach
+  // the listener as soon as they end and finished processes are forgotten, so memory stays bounded by the
+  // processes that are waiting or running, however long the feed is
+  public SchedulerRun start(ClusterListener listener) {
+    SchedulerRun run = newRun();
+    run.start(getName(), listener);
+    return run;
+  }
+
+}
+
+// State of one run of a scheduler: the submitted processes, the ready queues and the clock. A run is used
+// once, by one thread at a time. Between two calls it can be saved as a Checkpoint and resumed from there
+abstract class SchedulerRun implements Serializable {
+  private static final long serialVersionUID = 1L;
+  protected static final int NEVER = Integer.MAX_VALUE;
+  protected static final int NONE = -1;
+
+  protected final ProcessTable processes = new ProcessTable(); // Submitted processes that did not finish yet
+  protected transient ClusterListener listener; // Receives every cluster as soon as it ends
+  protected Cluster cluster; // Cluster of the running process
+  protected int runningProcess = NONE; // Id of the running process, NONE while the cpu is idle
+  protected int now;
+  protected final int contextSwitchingTime; // Paid before a cluster whenever the cpu turns to another process
+  private int lastPid = -1; // Pid of the process the cpu last turned to, -1 before the first one
+  private int chargedUntil; // Time up to which the running process burst was decreased
+  // Submitted ids waiting for their arrival, in arrival order
+  private final IntrusiveQueue pendingProcesses = new IntrusiveQueue();
+  private int lastArrivalTime; // Arrival time of the last submitted process
+  private String name; // Of the scheduler, the counters are published under it
+  private long[] counts; // Counter -> count, null with instrumentation off
+  private transient ScheduleRunEvent runEvent;
+
+  protected SchedulerRun(int contextSwitchingTime) {
+    this.contextSwitchingTime = contextSwitchingTime;
+  }
+
+  protected abstract void addArrivedProcess(int id);
+
+  // Earliest time after now at which the scheduler must act even if nothing arrives
+  protected abstract int nextDeadline();
+
+  protected abstract void handleEventAt(int t);
+
+  // Admitted processes waiting for the cpu, the running one excluded
+  protected abstract int readyCount();
+
+  // Take a waiting process out of the scheduler so another cpu can run it, NONE if there is none.
+  // The id stays in the table until the caller released it
+  protected abstract int removeStealableProcess();
+
+  // Called once the listener is known, before the first process is submitted
+  protected void onStart() {}
+
+  // Called once a run read back from a checkpoint has its listener
+  protected void onResume() {}
+
+  void start(String name, ClusterListener listener) {
+    this.name = name;
+    attach(listener);
+    onStart();
+  }
+
+  void resume(ClusterListener listener) {
+    attach(listener);
+    onResume();
+  }
+
+  private void attach(ClusterListener listener) {
+    this.listener = listener;
+    if (SchedulerCounters.ENABLED) {
+      if (counts == null) {
+        counts = new long[Counter.values().length];
+      }
+      runEvent = new ScheduleRunEvent();
+      runEvent.begin();
+    }
+  }
+
+  // Everything needed to go on from here, processes submitted to the resumed run must not arrive before
+  // the last one submitted to this one. The open cluster is saved, the listener is not
+  public Checkpoint checkpoint() {
+    return Checkpoint.of(this, lastArrivalTime);
+  }
+
+  // Processes must be submitted in arrival order, everything that happens before this arrival is run
+  public void submit(Process process) {
+    runEventsBeforeArrival(process, process.getArrivalTime());
+    pendingProcesses.add(processes.add(process));
+  }
+
+  // Submit a process moved from another cpu, it arrives here at arrivalTime with what is left of its burst
+  protected void submit(Process process, long sequence, int arrivalTime, int burstTime, int priority) {
+    runEventsBeforeArrival(process, arrivalTime);
+    pendingProcesses.add(processes.add(process, sequence, arrivalTime, burstTime, priority));
+  }
+
+  private void runEventsBeforeArrival(Process process, int arrivalTime) {
+    if (arrivalTime < lastArrivalTime) {
+      throw new IllegalArgumentException("Process " + process.getName() + " arrives at " + arrivalTime
+          + ", before the previous one at " + lastArrivalTime);
+    }
+    runEventsBefore(arrivalTime);
+    lastArrivalTime = arrivalTime;
+  }
+
+  // Promise that no more processes arrive before time, everything that happens before it is run
+  public void advanceTo(int time) {
+    if (time > lastArrivalTime) {
+      runEventsBefore(time);
+      lastArrivalTime = time;
+    }
+  }
+
+  // No more processes will arrive, run until the cpu is idle
+  public void finish() {
+    runEventsBefore(NEVER);
+    if (SchedulerCounters.ENABLED) {
+      long[] totals = getCounts();
+      SchedulerCounters.of(name).add(totals);
+      runEvent.scheduler = name;
+      runEvent.events = totals[Counter.EVENTS.ordinal()];
+      runEvent.simulatedTime = totals[Counter.SIMULATED_TIME.ordinal()];
+      runEvent.dispatches = totals[Counter.DISPATCHES.ordinal()];
+      runEvent.preemptions = totals[Counter.PREEMPTIONS.ordinal()];
+      runEvent.contextSwitches = totals[Counter.CONTEXT_SWITCHES.ordinal()];
+      runEvent.heapOperations = totals[Counter.HEAP_OPERATIONS.ordinal()];
+      runEvent.agingRekeys = totals[Counter.AGING_REKEYS.ordinal()];
+      runEvent.quantumAdjustments = totals[Counter.QUANTUM_ADJUSTMENTS.ordinal()];
+      runEvent.migrations = totals[Counter.MIGRATIONS.ordinal()];
+      runEvent.commit();
+    }
+  }
+
+  protected void runEventsBefore(int limit) {
+    int t;
+    while ((t = nextEventTime()) < limit) {
+      now = t;
+      count(Counter.EVENTS);
+      handleEventAt(t);
+    }
+  }
+
+  // Free with instrumentation off, the JIT removes the call
+  protected final void count(Counter counter) {
+    if (SchedulerCounters.ENABLED) { counts[counter.ordinal()] += 1; }
+  }
+
+  // Operations on the heaps of the run, they count them themselves
+  protected long heapOperationCount() {
+    return 0;
+  }
+
+  // What this run counted so far, only with instrumentation on
+  protected long[] getCounts() {
+    long[] totals = counts.clone();
+    totals[Counter.SIMULATED_TIME.ordinal()] = now;
+    totals[Counter.HEAP_OPERATIONS.ordinal()] = heapOperationCount();
+    return totals;
+  }
+
+  private void countPreemption() {
+    count(Counter.PREEMPTIONS);
+    PreemptionEvent event = new PreemptionEvent();
+    if (event.isEnabled()) {
+      event.scheduler = name;
+      event.pid = processes.getPid(runningProcess);
+      event.time = now;
+      event.commit();
+    }
+  }
+
+  protected int nextEventTime() {
+    return Math.min(nextArrivalTime(), nextDeadline());
+  }
+
+  // Nothing running, waiting or about to arrive
+  protected boolean isIdle() {
+    return runningProcess == NONE && pendingProcesses.isEmpty() && readyCount() == 0;
+  }
+
+  // Processes this cpu still has to run
+  protected int load() {
+    return readyCount() + (runningProcess == NONE ? 0 : 1) + pendingProcesses.size();
+  }
+
+  protected int nextArrivalTime() {
+    return pendingProcesses.isEmpty() ? NEVER : processes.getArrivalTime(pendingProcesses.peek());
+  }
+
+  // Admit all submitted processes arriving at or before time, returns true if any arrived
+  protected boolean admitArrivalsUntil(int time) {
+    boolean isNewProcessesArrived = false;
+    while (!pendingProcesses.isEmpty() && processes.getArrivalTime(pendingProcesses.peek()) <= time) {
+      addArrivedProcess(pendingProcesses.poll());
+      isNewProcessesArrived = true;
+    }
+    return isNewProcessesArrived;
+  }
+
+  // Start time of a cluster of id dispatched at t. Turning to another process costs a context switch, which
+  // the listener gets as an overhead segment; a process put back on the cpu right away runs at once
+  protected int switchTo(int id, int t) {
+    int pid = processes.getPid(id);
+    if (pid == lastPid || contextSwitchingTime == 0) {
+      lastPid = pid;
+      return t;
+    }
+    lastPid = pid;
+    count(Counter.CONTEXT_SWITCHES);
+    listener.onContextSwitch(0, t, t + contextSwitchingTime);
+    return t + contextSwitchingTime;
+  }
+
+  // Behind its context switch the process has not started yet
+  protected boolean isSwitching() {
+    return runningProcess != NONE && now < cluster.startTime;
+  }
+
+  protected void openCluster(int id, Cluster cluster) {
+    count(Counter.DISPATCHES);
+    this.runningProcess = id;
+    this.cluster = cluster;
+    this.chargedUntil = cluster.startTime;
+  }
+
+  protected void closeCluster(int endTime) {
+    if (SchedulerCounters.ENABLED && !processes.isFinished(runningProcess)) {
+      countPreemption();
+    }
+    cluster.setEndTime(endTime);
+    listener.onCluster(cluster);
+    cluster = null;
+    runningProcess = NONE;
+  }
+
+  // Take the cpu back from a process at the end of its context switch, before it ran: it gets no cluster
+  protected void dropCluster() {
+    if (SchedulerCounters.ENABLED) {
+      countPreemption();
+    }
+    cluster = null;
+    runningProcess = NONE;
+  }
+
+  // Close the cluster of the finished running process and give its id back to the table
+  protected void finishRunningProcess(int endTime) {
+    int id = runningProcess;
+    closeCluster(endTime);
+    processes.release(id);
+  }
+
+  // Decrease the running process burst by the time elapsed since it was last charged, the
+  // process may not have started yet when it was dispatched behind a context switch
+  protected void chargeRunningProcess(int time) {
+    if (runningProcess == NONE || time <= chargedUntil) { return; }
+    int burstTime = processes.getBurstTime(runningProcess) - (time - chargedUntil);
+    processes.setBurstTime(runningProcess, Math.max(0, burstTime));
+    chargedUntil = time;
+  }
+
+  // A process without burst still needs its time unit, another event at its start must not end it
+  protected boolean isRunningProcessFinished() {
+    return runningProcess != NONE && processes.isFinished(runningProcess) && now > cluster.startTime;
+  }
+
+  // A process always holds the cpu for at least one time unit, as with the old tick loop
+  protected int completionTime() {
+    if (runningProcess == NONE) { return NEVER; }
+    return chargedUntil + Math.max(1, processes.getBurstTime(runningProcess));
+  }
+}
+
+// A SchedulerRun saved between two calls: Java serialization of the whole run, gzipped. The tables, queues
+// and heaps of a run are flat arrays, so the state stays small and cheap to write. Every class of a run
+// declares its serialVersionUID: bump it whenever its fields change, reading an older checkpoint then
+// fails as one of another version instead of leaving the new fields at zero
+final class Checkpoint {
+  static final int MAGIC = 0x434B5054; // "CKPT"
+  static final int VERSION = 1;
+  // Only the classes a run is made of are read back, a checkpoint file may come from anywhere and reading
+  // any other class would run whatever its readObject does. Policies found by the ServiceLoader may live in
+  // another package
+  private static final ObjectInputFilter FILTER = ObjectInputFilter.allowFilter(type -> {
+    Class<?> element = type;
+    while (element.isArray()) {
+      element = element.getComponentType();
+    }
+    // An ArrayDeque checks its Object[] before reading the elements
+    return element.isPrimitive() || element == Object.class || element == Enum.class || element == ArrayDeque.class
+        || element.getPackageName().equals(Checkpoint.class.getPackageName())
+        || SchedulingPolicy.class.isAssignableFrom(element) || PolicyRun.class.isAssignableFrom(element);
+  }, ObjectInputFilter.Status.REJECTED);
+  private final int time; // Processes submitted after resuming must not arrive before it
+  private final byte[] state;
+
+  private Checkpoint(int time, byte[] state) {
+    this.time = time;
+    this.state = state;
+  }
+
+  static Checkpoint of(SchedulerRun run, int time) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(bytes))) {
+      out.writeObject(run);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new Checkpoint(time, bytes.toByteArray());
+  }
+
+  public int getTime() {
+    return time;
+  }
+
+  // Bytes of the compressed state
+  public int getSize() {
+    return state.length;
+  }
+
+  // A new run going on from the checkpoint, any number of runs can be resumed from the same one
+  public SchedulerRun resume(ClusterListener listener) {
+    SchedulerRun run;
+    try (ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(state)))) {
+      in.setObjectInputFilter(FILTER);
+      run = (SchedulerRun) in.readObject();
+    } catch (InvalidClassException e) {
+      // A class changed since the checkpoint names itself, a class the filter rejects does not
+      if (e.classname == null) {
+        throw new UncheckedIOException(e);
+      }
+      throw new IllegalStateException("Checkpoint of another version of the schedulers", e);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("Checkpoint of another version of the schedulers", e);
+    }
+    run.resume(listener);
+    return run;
+  }
+
+  public void writeTo(Path path) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(time);
+      out.writeInt(state.length);
+      out.write(state);
+    }
+  }
+
+  public static Checkpoint readFrom(Path path) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a checkpoint: " + path);
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported checkpoint version " + version + " in " + path);
+      }
+      int time = in.readInt();
+      int length = in.readInt();
+      if (length < 0) {
+        throw new IOException("Corrupt checkpoint: " + path);
+      }
+      byte[] state = new byte[length];
+      in.readFully(state);
+      return new Checkpoint(time, state);
+    }
+  }
+
+}
+
+class SjfScheduler extends Scheduler {
+  private static final long serialVersionUID = 1L;
+  private final int contextSwitchingTime;
+
+  public SjfScheduler(int contextSwitchingTime) {
+    this.contextSwitchingTime = contextSwitchingTime;
+  }
+
+  @Override
+  public int getContextSwitchingTime() {
+    return contextSwitchingTime;
+  }
+
+  @Override
+  protected void writeParameters(DataOutput out) throws IOException {
+    out.writeInt(contextSwitchingTime);
+  }
+
+  @Override
+  protected SchedulerRun newRun() {
+    return new Run(contextSwitchingTime);
+  }
+
+  private static final class Run extends SchedulerRun {
+    private static final long serialVersionUID = 1L;
+    private final IndexedHeap readyProcesses = new IndexedHeap(); // Keyed on (burst time, arrival time)
+
+    Run(int contextSwitchingTime) {
+      super(contextSwitchingTime);
+    }
+
+    @Override
+    protected void addArrivedProcess(int id) {
+      long key = IndexedHeap.packKey(processes.getBurstTime(id), processes.getArrivalTime(id));
+      readyProcesses.add(id, key, processes.getSequence(id));
+    }
+
+    @Override
+    protected int nextDeadline() {
+      return completionTime();
+    }
+
+    @Override
+    protected void handleEventAt(int t) {
+      chargeRunningProcess(t);
+      if (isRunningProcessFinished()) {
+        finishRunningProcess(t);
+      }
+      admitArrivalsUntil(t);
+      if (runningProcess == NONE && !readyProcesses.isEmpty()) {
+        int shortestProcess = readyProcesses.poll();
+        // Processes arriving during the context switch join the ready queue in one pass
+        admitArrivalsUntil(t + contextSwitchingTime);
+        openCluster(shortestProcess, new Cluster(processes.getProcess(shortestProcess), processes.getPid(shortestProcess), switchTo(shortestProcess, t)));
+      }
+    }
+
+    @Override
+    protected long heapOperationCount() {
+      return readyProcesses.getOperationCount();
+    }
+
+    @Override
+    protected int readyCount() {
+      return readyProcesses.size();
+    }
+
+    @Override
+    protected int removeStealableProcess() {
+      int id = readyProcesses.peekLast();
+      if (id == -1) { return NONE; }
+      readyProcesses.remove(id);
+      return id;
+    }
+  }
+
+}
+
+class SrtfScheduler extends Scheduler {
+  private static final long serialVersionUID = 1L;
+  public static final int DEFAULT_AGE = 20;
+  private final int age;
+  private final int contextSwitchingTime;
+
+  public SrtfScheduler() {
+    this(DEFAULT_AGE);
+  }
+
+  public SrtfScheduler(int age) {
+    this(age, 0);
+  }
+
+  public SrtfScheduler(int age, int contextSwitchingTime) {
+    this.age = age;
+    this.contextSwitchingTime = contextSwitchingTime;
+  }
+
+  @Override
+  public int getContextSwitchingTime() {
+    return contextSwitchingTime;
+  }
+
+  @Override
+  protected void writeParameters(DataOutput out) throws IOException {
+    out.writeInt(age);
+    out.writeInt(contextSwitchingTime);
+  }
+
+  @Override
+  protected SchedulerRun newRun() {
+    return new Run(age, contextSwitchingTime);
+  }
+
+  private static final class Run extends SchedulerRun {
+    private static final long serialVersionUID = 1L;
+    private final IndexedHeap readyProcesses = new IndexedHeap();
+    private final AgingTimer agingTimer;
+
+    Run(int age, int contextSwitchingTime) {
+      super(contextSwitchingTime);
+      agingTimer = new AgingTimer(age);
+    }
+
+    // Aged processes (priority 1) first, then the shortest remaining burst, then the earliest arrival
+    private long keyOf(int id) {
+      long priorityClass = processes.getPriority(id) == 1 ? 0 : 1;
+      return priorityClass << 62 | (long) processes.getBurstTime(id) << 31 | processes.getArrivalTime(id);
+    }
+
+    @Override
+    protected void addArrivedProcess(int id) {
+      processes.setPriority(id, 10);
+      addReadyProcess(id, now);
+    }
+
+    private void addReadyProcess(int id, int t) {
+      readyProcesses.add(id, keyOf(id), processes.getSequence(id));
+      if (processes.getPriority(id) > 1) {
+        agingTimer.schedule(id, processes.getArrivalTime(id), t);
+      }
+    }
+
+    private int pollReadyProcess() {
+      int id = readyProcesses.poll();
+      agingTimer.cancel(id);
+      return id;
+    }
+
+    // Only the processes whose aging moment is t are visited and re-keyed
+    private void increaseOldProcessesPriority(int t) {
+      for (int id = agingTimer.pollDue(t); id != -1; id = agingTimer.pollDue(t)) {
+        processes.increasePriority(id);
+        readyProcesses.update(id, keyOf(id));
+        count(Counter.AGING_REKEYS);
+        if (processes.getPriority(id) > 1) {
+          agingTimer.schedule(id, processes.getArrivalTime(id), t);
+        }
+      }
+    }
+
+    // The end of a context switch is an event too, what arrived during it may preempt the process then
+    @Override
+    protected int nextDeadline() {
+      int deadline = Math.min(completionTime(), agingTimer.nextDeadline());
+      return isSwitching() ? Math.min(deadline, cluster.startTime) : deadline;
+    }
+
+    @Override
+    protected void handleEventAt(int t) {
+      increaseOldProcessesPriority(t);
+      chargeRunningProcess(t);
+      if (isRunningProcessFinished()) {
+        finishRunningProcess(t);
+      }
+      boolean isNewProcessesArrived = admitArrivalsUntil(t);
+      // A context switch is never cut short
+      if (isSwitching()) { return; }
+      boolean isSwitchOver = runningProcess != NONE && t == cluster.startTime;
+      if (isNewProcessesArrived || isSwitchOver || runningProcess == NONE) {
+        if (readyProcesses.isEmpty()) { return; }
+        if (runningProcess == NONE) {
+          int shortestProcess = pollReadyProcess();
+          openCluster(shortestProcess, new Cluster(processes.getProcess(shortestProcess), processes.getPid(shortestProcess), switchTo(shortestProcess, t)));
+        } else if (readyProcesses.peekKey() < keyOf(runningProcess)) {
+          int shortestProcess = pollReadyProcess();
+          addReadyProcess(runningProcess, t);
+          // Cluster part
+          if (isSwitchOver) {
+            dropCluster();
+          } else {
+            closeCluster(t);
+          }
+          openCluster(shortestProcess, new Cluster(processes.getProcess(shortestProcess), processes.getPid(shortestProcess), switchTo(shortestProcess, t)));
+        }
+      }
+    }
+
+    @Override
+    protected long heapOperationCount() {
+      return readyProcesses.getOperationCount() + agingTimer.getOperationCount();
+    }
+
+    @Override
+    protected int readyCount() {
+      return readyProcesses.size();
+    }
+
+    // The process gets priority 10 again wherever it lands, as any SRTF arrival
+    @Override
+    protected int removeStealableProcess() {
+      int id = readyProcesses.peekLast();
+      if (id == -1) { return NONE; }
+      readyProcesses.remove(id);
+      agingTimer.cancel(id);
+      return id;
+    }
+  }
+
+}
+
+class PriorityScheduler extends Scheduler {
+  private static final long serialVersionUID = 1L;
+  public static final int DEFAULT_AGE = 30;
+  private final int age;
+  private final int contextSwitchingTime;
+
+  public PriorityScheduler() {
+    this(DEFAULT_AGE);
+  }
+
+  public PriorityScheduler(int age) {
+    this(age, 0);
+  }
+
+  public PriorityScheduler(int age, int contextSwitchingTime) {
+    this.age = age;
+    this.contextSwitchingTime = contextSwitchingTime;
+  }
+
+  @Override
+  public int getContextSwitchingTime() {
+    return contextSwitchingTime;
+  }
+
+  @Override
+  protected void writeParameters(DataOutput out) throws IOException {
+    out.writeInt(age);
+    out.writeInt(contextSwitchingTime);
+  }
+
+  @Override
+  protected SchedulerRun newRun() {
+    return new Run(age, contextSwitchingTime);
+  }
+
+  private static final class Run extends SchedulerRun {
+    private static final long serialVersionUID = 1L;
+    private final IndexedHeap readyProcesses = new IndexedHeap(); // Keyed on (priority, arrival time)
+    private final AgingTimer agingTimer;
+
+    Run(int age, int contextSwitchingTime) {
+      super(contextSwitchingTime);
+      agingTimer = new AgingTimer(age);
+    }
+
+    private long keyOf(int id) {
+      return IndexedHeap.packKey(processes.getPriority(id), processes.getArrivalTime(id));
+    }
+
+    @Override
+    protected void addArrivedProcess(int id) {
+      readyProcesses.add(id, keyOf(id), processes.getSequence(id));
+      if (processes.getPriority(id) > 1) {
+        agingTimer.schedule(id, processes.getArrivalTime(id), now);
+      }
+    }
+
+    // Only the processes whose aging moment is t are visited and re-keyed
+    private void increaseOldProcessesPriority(int t) {
+      for (int id = agingTimer.pollDue(t); id != -1; id = agingTimer.pollDue(t)) {
+        processes.increasePriority(id);
+        readyProcesses.update(id, keyOf(id));
+        count(Counter.AGING_REKEYS);
+        if (processes.getPriority(id) > 1) {
+          agingTimer.schedule(id, processes.getArrivalTime(id), t);
+        }
+      }
+    }
+
+    @Override
+    protected int nextDeadline() {
+      return Math.min(completionTime(), agingTimer.nextDeadline());
+    }
+
+    @Override
+    protected void handleEventAt(int t) {
+      // Process the current process
+      chargeRunningProcess(t);
+      if (isRunningProcessFinished()) {
+        finishRunningProcess(t);
+      }
+      increaseOldProcessesPriority(t);
+      admitArrivalsUntil(t);
+      // Run new process if there is no running process
+      if (runningProcess == NONE && !readyProcesses.isEmpty()) {
+        int id = readyProcesses.poll();
+        agingTimer.cancel(id);
+        openCluster(id, new Cluster(processes.getProcess(id), processes.getPid(id), switchTo(id, t)));
+      }
+    }
+
+    @Override
+    protected long heapOperationCount() {
+      return readyProcesses.getOperationCount() + agingTimer.getOperationCount();
+    }
+
+    @Override
+    protected int readyCount() {
+      return readyProcesses.size();
+    }
+
+    // The process keeps the priority it aged to
+    @Override
+    protected int removeStealableProcess() {
+      int id = readyProcesses.peekLast();
+      if (id == -1) { return NONE; }
+      readyProcesses.remove(id);
+      agingTimer.cancel(id);
+      return id;
+    }
+  }
+
+}
+
+// Supplies the random draw in [0, 20) that goes into the AG factor of a round robin process
+interface AgFactorSource extends Serializable {
+  int draw(long sequence);
+
+  // Only a seeded source draws the same factors every run
+  default boolean isSeeded() {
+    return false;
+  }
+
+  // What the draws of a seeded source depend on, see Scheduler.writeParameters
+  default void writeParameters(DataOutput out) throws IOException {}
+
+  // Not reproducible, every thread draws from its own generator so parallel runs never contend
+  static AgFactorSource unseeded() {
+    return new Unseeded();
+  }
+
+  // Reproducible and stateless: the draw is the SplitMix64 hash of the seed and the arrival order,
+  // so one source can be shared by any number of threads and gives the same charts every time
+  static AgFactorSource seeded(long seed) {
+    return new Seeded(seed);
+  }
+
+  final class Unseeded implements AgFactorSource {
+    private static final long serialVersionUID = 1L;
+    @Override
+    public int draw(long sequence) {
+      return ThreadLocalRandom.current().nextInt(20);
+    }
+  }
+
+  final class Seeded implements AgFactorSource {
+    private static final long serialVersionUID = 1L;
+    private final long seed;
+
+    Seeded(long seed) {
+      this.seed = seed;
+    }
+
+    @Override
+    public int draw(long sequence) {
+      long z = seed + (sequence + 1) * 0x9E3779B97F4A7C15L;
+      z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+      z = z ^ (z >>> 31);
+      return (int) ((z >>> 33) % 20);
+    }
+
+    @Override
+    public boolean isSeeded() {
+      return true;
+    }
+
+    @Override
+    public void writeParameters(DataOutput out) throws IOException {
+      out.writeLong(seed);
+    }
+  }
+}
+
+class RoundRobinScheduler extends Scheduler {
+  private static final long serialVersionUID = 1L;
+  private final int quantum;
+  private final AgFactorSource agFactorSource; // Stateless, runs share it
+  private final int contextSwitchingTime;
+
+  public RoundRobinScheduler(int quantum) {
+    this(quantum, AgFactorSource.unseeded());
+  }
+
+  public RoundRobinScheduler(int quantum, AgFactorSource agFactorSource) {
+    this(quantum, agFactorSource, 0);
+  }
+
+  public RoundRobinScheduler(int quantum, AgFactorSource agFactorSource, int contextSwitchingTime) {
+    if (quantum < 1) {
+      throw new IllegalArgumentException("The quantum must be at least 1, not " + quantum);
+    }
+    this.quantum = quantum;
+    this.agFactorSource = agFactorSource;
+    this.contextSwitchingTime = contextSwitchingTime;
+  }
+
+  @Override
+  public boolean isReproducible() {
+    return agFactorSource.isSeeded();
+  }
+
+  @Override
+  public int getContextSwitchingTime() {
+    return contextSwitchingTime;
+  }
+
+  @Override
+  protected void writeParameters(DataOutput out) throws IOException {
+    out.writeInt(quantum);
+    out.writeUTF(agFactorSource.getClass().getName());
+    agFactorSource.writeParameters(out);
+    out.writeInt(contextSwitchingTime);
+  }
+
+  @Override
+  protected SchedulerRun newRun() {
+    return new Run(quantum, agFactorSource, contextSwitchingTime);
+  }
+
+  private static final class Run extends SchedulerRun {
+    private static final long serialVersionUID = 1L;
+    private final IntrusiveQueue readyProcesses = new IntrusiveQueue();
+    private long readyQuantumSum; // Sum of the quantum of every process in readyProcesses
+    private final IndexedHeap minAgProcesses = new IndexedHeap(); // Keyed on (AG factor, arrival time)
+    private final AgFactorSource agFactorSource;
+    private final int initialQuantum;
+    private int halfQuantumEnd; // Preemption is allowed from here on
+    private int quantumEnd;
+
+    Run(int quantum, AgFactorSource agFactorSource, int contextSwitchingTime) {
+      super(contextSwitchingTime);
+      this.initialQuantum = quantum;
+      this.agFactorSource = agFactorSource;
+    }
+
+    private int newAgFactor(int id) {
+      int random = agFactorSource.draw(processes.getSequence(id));
+      int arrivalTime = processes.getArrivalTime(id);
+      int burstTime = processes.getBurstTime(id);
+      if (random < 10) {
+        return random + arrivalTime + burstTime;
+      } else if (random > 10) {
+        return 10 + arrivalTime + burstTime;
+      } else {
+        return processes.getPriority(id) + arrivalTime + burstTime;
+      }
+    }
+
+    @Override
+    protected void addArrivedProcess(int id) {
+      processes.setAgFactor(id, newAgFactor(id));
+      processes.setQuantum(id, initialQuantum);
+      addReadyProcess(id);
+      long key = IndexedHeap.packKey(processes.getAgFactor(id), processes.getArrivalTime(id));
+      minAgProcesses.add(id, key, processes.getSequence(id));
+    }
+
+    private void addReadyProcess(int id) {
+      readyProcesses.add(id);
+      readyQuantumSum += processes.getQuantum(id);
+    }
+
+    private int pollReadyProcess() {
+      int id = readyProcesses.poll();
+      if (id != -1) {
+        readyQuantumSum -= processes.getQuantum(id);
+      }
+      return id;
+    }
+
+    private void removeReadyProcess(int id) {
+      if (readyProcesses.remove(id)) {
+        readyQuantumSum -= processes.getQuantum(id);
+      }
+    }
+
+    private void setQuantum(int id, int quantum) {
+      if (readyProcesses.contains(id)) {
+        readyQuantumSum += quantum - processes.getQuantum(id);
+      }
+      processes.setQuantum(id, quantum);
+    }
+
+    private double getMeanOfQuantum() {
+      return readyQuantumSum / (double) readyProcesses.size();
+    }
+
+    private void dropRunningProcess() {
+      setQuantum(runningProcess, 0);
+      removeReadyProcess(runningProcess);
+      minAgProcesses.remove(runningProcess);
+    }
+
+    // The quantum starts once the context switch is over
+    private void dispatch(int id, int t) {
+      int quantum = processes.getQuantum(id);
+      int startTime = switchTo(id, t);
+      openCluster(id, new ClusterQ(processes.getProcess(id), processes.getPid(id), startTime, quantum));
+      halfQuantumEnd = startTime + (int) Math.ceil(quantum / 2.0);
+      quantumEnd = startTime + quantum;
+    }
+
+    private void endCluster(int t, int endQ) {
+      ((ClusterQ) cluster).setEndQ(endQ);
+      closeCluster(t);
+    }
+
+    @Override
+    protected int nextDeadline() {
+      if (runningProcess == NONE) { return NEVER; }
+      int deadline = Math.min(completionTime(), quantumEnd);
+      return halfQuantumEnd > now ? Math.min(deadline, halfQuantumEnd) : deadline;
+    }
+
+    @Override
+    protected void handleEventAt(int t) {
+      admitArrivalsUntil(t);
+      // Stand on the process with the least AG factor when the cpu is idle
+      if (runningProcess == NONE) {
+        int minAgProcess = minAgProcesses.peek();
+        removeReadyProcess(minAgProcess);
+        dispatch(minAgProcess, t);
+        return;
+      }
+      chargeRunningProcess(t);
+      if (isRunningProcessFinished()) {
+        dropRunningProcess();
+        ((ClusterQ) cluster).setEndQ(0);
+        finishRunningProcess(t);
+        int nextProcess = pollReadyProcess();
+        if (nextProcess != -1) { dispatch(nextProcess, t); }
+      } else if (t == quantumEnd) {
+        // Quantum used up
+        int id = runningProcess;
+        addReadyProcess(id);
+        int newQuntum = processes.getQuantum(id) + (int) Math.ceil(0.1 * getMeanOfQuantum());
+        setQuantum(id, newQuntum);
+        count(Counter.QUANTUM_ADJUSTMENTS);
+        endCluster(t, newQuntum);
+        dispatch(pollReadyProcess(), t);
+      } else if (t >= halfQuantumEnd && minAgProcesses.peekKey() < minAgProcesses.getKey(runningProcess)) {
+        // Preemptive part
+        int id = runningProcess;
+        int used = t - cluster.startTime;
+        int newQuntum = 2 * processes.getQuantum(id) - used;
+        setQuantum(id, newQuntum);
+        count(Counter.QUANTUM_ADJUSTMENTS);
+        addReadyProcess(id);
+        endCluster(t, newQuntum);
+        int minAgProcess = minAgProcesses.peek();
+        removeReadyProcess(minAgProcess);
+        dispatch(minAgProcess, t);
+      }
+    }
+
+    @Override
+    protected long heapOperationCount() {
+      return minAgProcesses.getOperationCount();
+    }
+
+    @Override
+    protected int readyCount() {
+      return readyProcesses.size();
+    }
+
+    // The last process of the queue, it gets a new AG factor and the initial quantum wherever it lands
+    @Override
+    protected int removeStealableProcess() {
+      int id = readyProcesses.peekLast();
+      if (id == -1) { return NONE; }
+      removeReadyProcess(id);
+      minAgProcesses.remove(id);
+      return id;
+    }
+  }
+
+}
+
+// A scheduling algorithm run by PolicyScheduler, told by the order of its ready queue. The policy is stateless
+// configuration, what it keeps during a run (per process or for the whole run) lives in the PolicyRun it
+// creates for each run. What it keeps for the whole run must not change its decisions after the cpu went idle,
+// ParallelSimulation runs the work after an idle gap as a run of its own. Implementations are found by
+// ServiceLoader (META-INF/services/cpuscheduling.SchedulingPolicy on the class path)
+interface SchedulingPolicy extends Serializable {
+  String getName();
+
+  PolicyRun newRun();
+
+  // Seed of the draws of PolicyContext.nextRandom(id), the same seed gives the same charts
+  default long getSeed() {
+    return 0;
+  }
+
+  // Every parameter its decisions depend on, the seed included, see Scheduler.writeParameters
+  void writeParameters(DataOutput out) throws IOException;
+}
+
+// What a policy sees of the run it decides for. Ids are those of the run's ProcessTable
+interface PolicyContext {
+  int now();
+
+  int getArrivalTime(int id);
+
+  // What is left of the burst
+  int getBurstTime(int id);
+
+  int getPriority(int id);
+
+  // Submission number, orders processes the same way whatever their ids
+  long getSequence(int id);
+
+  // SchedulerRun.NONE while the cpu is idle
+  int getRunningProcess();
+
+  // Least key of the ready queue, Long.MAX_VALUE if it is empty
+  long peekReadyKey();
+
+  // Next draw for the process: the SplitMix64 hash of the policy seed, the submission number and how many
+  // times the process drew before, like AgFactorSource.seeded. No draw depends on the other processes, so a
+  // run cut at an idle gap draws the same numbers as one in a piece
+  long nextRandom(int id);
+}
+
+// The decisions and state of a policy in one run. The hooks tell it when processes come, run and go; an id
+// may come back as another process after onLeave
+abstract class PolicyRun implements Serializable {
+  private static final long serialVersionUID = 1L;
+  protected PolicyContext context;
+
+  // Lower keys run first, equal keys in the order they became ready. Taken when a process becomes ready,
+  // and for the running process whenever a preemption or the end of its slice is considered
+  protected abstract long sortKey(int id);
+
+  // Keys that change while processes wait (with the clock, or drawn at random): every ready process is
+  // keyed again before each decision, O(n) each time
+  protected boolean isRekeyed() {
+    return false;
+  }
+
+  // A process that becomes ready may take the cpu from the running one
+  protected boolean isPreemptive() {
+    return false;
+  }
+
+  protected boolean isPreempting(long readyKey, long runningKey) {
+    return readyKey < runningKey;
+  }
+
+  // At the end of its slice the running process goes behind the ready processes of its key
+  protected boolean isYieldingTo(long readyKey, long runningKey) {
+    return readyKey <= runningKey;
+  }
+
+  // Longest run of the process from now before it may have to yield, 0 for no limit
+  protected int timeSlice(int id) {
+    return 0;
+  }
+
+  // Admitted to this cpu, before its key is taken
+  protected void onArrival(int id) {}
+
+  // Given the cpu, before its time slice is asked
+  protected void onDispatch(int id) {}
+
+  // The running process ran from..to, told at every event
+  protected void onRun(int id, int from, int to) {}
+
+  // The running process used up its slice, before it is compared with the ready ones
+  protected void onSliceEnd(int id) {}
+
+  // Finished, or taken to another cpu
+  protected void onLeave(int id) {}
+
+  // Time at which the policy must act even if nothing happens, only kept while a process runs or waits
+  protected int nextTimer() {
+    return SchedulerRun.NEVER;
+  }
+
+  // Called at the first event at or after nextTimer, the running process then starts a new time slice
+  protected void onTimer(int t) {}
+}
+
+// First come, first served
+class FcfsPolicy implements SchedulingPolicy {
+  private static final long serialVersionUID = 1L;
+
+  @Override
+  public String getName() {
+    return "FCFS";
+  }
+
+  @Override
+  public PolicyRun newRun() {
+    return new Run();
+  }
+
+  @Override
+  public void writeParameters(DataOutput out) throws IOException {}
+
+  private static final class Run extends PolicyRun {
+    private static final long serialVersionUID = 1L;
+    @Override
+    protected long sortKey(int id) {
+      return context.getArrivalTime(id);
+    }
+  }
+
+}
+
+// Highest response ratio next: (waiting + burst) / burst, short processes go first but a long one overtakes
+// them once it waited long enough. The ratio grows while processes wait, so they are keyed again at each dispatch
+class HrrnPolicy implements SchedulingPolicy {
+  private static final long serialVersionUID = 1L;
+  private static final int RATIO_SCALE = 20; // Bits of the ratio kept after the point
+
+  @Override
+  public String getName() {
+    return "HRRN";
+  }
+
+  @Override
+  public PolicyRun newRun() {
+    return new Run();
+  }
+
+  @Override
+  public void writeParameters(DataOutput out) throws IOException {}
+
+  private static final class Run extends PolicyRun {
+    private static final long serialVersionUID = 1L;
+    @Override
+    protected long sortKey(int id) {
+      long burstTime = Math.max(1, context.getBurstTime(id));
+      long waitingTime = context.now() - context.getArrivalTime(id);
+      return -(((waitingTime + burstTime) << RATIO_SCALE) / burstTime);
+    }
+
+    @Override
+    protected boolean isRekeyed() {
+      return true;
+    }
+  }
+
+}
+
+// Lottery scheduling: at every dispatch and at the end of every quantum the ready processes and the running one
+// hold a lottery, each with 20 - priority tickets (priority clamped to [-20, 19] like a nice value). Every
+// process draws an exponential time with its ticket count as rate and the least wins, which picks a process
+// with the probability of its share of the tickets
+class LotteryPolicy implements SchedulingPolicy {
+  private static final long serialVersionUID = 1L;
+  public static final int DEFAULT_QUANTUM = 4;
+  private static final double KEY_SCALE = 0x1.0p40;
+  private final int quantum;
+  private final long seed;
+
+  public LotteryPolicy() {
+    this(DEFAULT_QUANTUM, 0);
+  }
+
+  public LotteryPolicy(int quantum, long seed) {
+    if (quantum < 1) {
+      throw new IllegalArgumentException("The quantum must be at least 1, not " + quantum);
+    }
+    this.quantum = quantum;
+    this.seed = seed;
+  }
+
+  @Override
+  public String getName() {
+    return "Lottery";
+  }
+
+  @Override
+  public long getSeed() {
+    return seed;
+  }
+
+  @Override
+  public PolicyRun newRun() {
+    return new Run(quantum);
+  }
+
+  @Override
+  public void writeParameters(DataOutput out) throws IOException {
+    out.writeInt(quantum);
+    out.writeLong(seed);
+  }
+
+  private static final class Run extends PolicyRun {
+    private static final long serialVersionUID = 1L;
+    private final int quantum;
+
+    Run(int quantum) {
+      this.quantum = quantum;
+    }
+
+    // StrictMath, so the same seed draws the same winners on every JVM
+    @Override
+    protected long sortKey(int id) {
+      int tickets = 20 - Math.max(-20, Math.min(19, context.getPriority(id)));
+      double uniform = ((context.nextRandom(id) >>> 11) + 1) * 0x1.0p-53; // In (0, 1]
+      return (long) (-StrictMath.log(uniform) / tickets * KEY_SCALE);
+    }
+
+    @Override
+    protected boolean isRekeyed() {
+      return true;
+    }
+
+    @Override
+    protected int timeSlice(int id) {
+      return quantum;
+    }
+  }
+
+}
+
+// Runs any SchedulingPolicy on the event engine, with a heap of primitive keys as ready queue
+class PolicyScheduler extends Scheduler {
+  private static final long serialVersionUID = 1L;
+  private final SchedulingPolicy policy;
+  private final int contextSwitchingTime;
+
+  public PolicyScheduler(SchedulingPolicy policy, int contextSwitchingTime) {
+    this.policy = policy;
+    this.contextSwitchingTime = contextSwitchingTime;
+  }
+
+  @Override
+  public String getName() {
+    return policy.getName();
+  }
+
+  @Override
+  public int getContextSwitchingTime() {
+    return contextSwitchingTime;
+  }
+
+  @Override
+  protected void writeParameters(DataOutput out) throws IOException {
+    out.writeUTF(policy.getClass().getName());
+    policy.writeParameters(out);
+    out.writeInt(contextSwitchingTime);
+  }
+
+  @Override
+  protected SchedulerRun newRun() {
+    return new Run(policy, contextSwitchingTime);
+  }
+
+  private static final class Run extends SchedulerRun implements PolicyContext {
+    private static final long serialVersionUID = 2L;
+    private final PolicyRun policy;
+    private final boolean isPreemptive;
+    private final boolean isRekeyed;
+    private final IndexedHeap readyProcesses = new IndexedHeap(); // Keyed on the policy key
+    private long readyOrder; // Tie-breaker, counts the times a process became ready
+    private int sliceEnd;
+    private int ranUntil; // Time up to which the policy was told the running process ran
+    private final long seed;
+    private int[] draws = new int[16]; // Id -> numbers drawn since it arrived
+
+    Run(SchedulingPolicy policy, int contextSwitchingTime) {
+      super(contextSwitchingTime);
+      this.policy = policy.newRun();
+      this.policy.context = this;
+      this.isPreemptive = this.policy.isPreemptive();
+      this.isRekeyed = this.policy.isRekeyed();
+      this.seed = policy.getSeed();
+    }
+
+    @Override
+    public int now() {
+      return now;
+    }
+
+    @Override
+    public int getArrivalTime(int id) {
+      return processes.getArrivalTime(id);
+    }
+
+    @Override
+    public int getBurstTime(int id) {
+      return processes.getBurstTime(id);
+    }
+
+    @Override
+    public int getPriority(int id) {
+      return processes.getPriority(id);
+    }
+
+    @Override
+    public long getSequence(int id) {
+      return processes.getSequence(id);
+    }
+
+    @Override
+    public int getRunningProcess() {
+      return runningProcess;
+    }
+
+    @Override
+    public long peekReadyKey() {
+      return readyProcesses.isEmpty() ? Long.MAX_VALUE : readyProcesses.peekKey();
+    }
+
+    @Override
+    public long nextRandom(int id) {
+      long z = mix(seed + (processes.getSequence(id) + 1) * 0x9E3779B97F4A7C15L);
+      draws[id] += 1;
+      return mix(z + draws[id] * 0x9E3779B97F4A7C15L);
+    }
+
+    private static long mix(long z) {
+      z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+      return z ^ (z >>> 31);
+    }
+
+    @Override
+    protected void addArrivedProcess(int id) {
+      if (id >= draws.length) {
+        draws = Arrays.copyOf(draws, Math.max(id + 1, draws.length * 2));
+      }
+      draws[id] = 0;
+      policy.onArrival(id);
+      readyProcesses.add(id, policy.sortKey(id), readyOrder++);
+    }
+
+    private void dispatch(int id, int t) {
+      policy.onDispatch(id);
+      int startTime = switchTo(id, t);
+      openCluster(id, new Cluster(processes.getProcess(id), processes.getPid(id), startTime));
+      ranUntil = startTime;
+      startSlice(startTime);
+    }
+
+    private void startSlice(int startTime) {
+      int timeSlice = policy.timeSlice(runningProcess);
+      if (timeSlice < 0) {
+        throw new IllegalStateException("Negative time slice " + timeSlice);
+      }
+      sliceEnd = timeSlice == 0 ? NEVER : startTime + timeSlice;
+    }
+
+    // Back to the ready queue with the key it was compared with, a process that did not run gets no cluster
+    private void requeueRunningProcess(int t, long key) {
+      int id = runningProcess;
+      if (t == cluster.startTime) {
+        dropCluster();
+      } else {
+        closeCluster(t);
+      }
+      readyProcesses.add(id, key, readyOrder++);
+    }
+
+    private void chargePolicy(int t) {
+      if (runningProcess == NONE || t <= ranUntil) { return; }
+      policy.onRun(runningProcess, ranUntil, t);
+      ranUntil = t;
+    }
+
+    // The policy timer only matters while there is something to run
+    @Override
+    protected int nextDeadline() {
+      if (runningProcess == NONE) {
+        return readyProcesses.isEmpty() ? NEVER : policy.nextTimer();
+      }
+      int deadline = Math.min(Math.min(completionTime(), sliceEnd), policy.nextTimer());
+      return isPreemptive && isSwitching() ? Math.min(deadline, cluster.startTime) : deadline;
+    }
+
+    @Override
+    protected void handleEventAt(int t) {
+      chargeRunningProcess(t);
+      chargePolicy(t);
+      if (isRunningProcessFinished()) {
+        policy.onLeave(runningProcess);
+        finishRunningProcess(t);
+      }
+      if (t >= policy.nextTimer()) {
+        policy.onTimer(t);
+        if (runningProcess != NONE) {
+          startSlice(Math.max(t, cluster.startTime));
+        }
+      }
+      boolean isNewProcessesArrived = admitArrivalsUntil(t);
+      // A context switch is never cut short
+      if (isSwitching()) { return; }
+      boolean isSliceOver = runningProcess != NONE && t >= sliceEnd;
+      boolean isPreemptionChecked = runningProcess != NONE && isPreemptive
+          && (isNewProcessesArrived || t == cluster.startTime);
+      if (isRekeyed && !readyProcesses.isEmpty() && (runningProcess == NONE || isSliceOver || isPreemptionChecked)) {
+        readyProcesses.rekey(policy::sortKey);
+      }
+      if (isSliceOver) {
+        policy.onSliceEnd(runningProcess);
+        long key = policy.sortKey(runningProcess);
+        // The process keeps the cpu while nobody it yields to waits
+        if (!readyProcesses.isEmpty() && policy.isYieldingTo(readyProcesses.peekKey(), key)) {
+          requeueRunningProcess(t, key);
+        } else {
+          startSlice(t);
+        }
+      } else if (isPreemptionChecked && !readyProcesses.isEmpty()) {
+        long key = policy.sortKey(runningProcess);
+        if (policy.isPreempting(readyProcesses.peekKey(), key)) {
+          requeueRunningProcess(t, key);
+        }
+      }
+      if (runningProcess == NONE && !readyProcesses.isEmpty()) {
+        dispatch(readyProcesses.poll(), t);
+      }
+    }
+
+    @Override
+    protected long heapOperationCount() {
+      return readyProcesses.getOperationCount();
+    }
+
+    @Override
+    protected int readyCount() {
+      return readyProcesses.size();
+    }
+
+    @Override
+    protected int removeStealableProcess() {
+      int id = readyProcesses.peekLast();
+      if (id == -1) { return NONE; }
+      readyProcesses.remove(id);
+      policy.onLeave(id);
+      return id;
+    }
+  }
+
+}
+
+// Multi-level feedback queue: level 0 first, round robin within a level with the level quantum. A process
+// starts at level 0 and goes down a level once it used up the quantum of its level, over as many runs as it
+// takes; a process arriving at a higher level takes the cpu. Every boostPeriod time units all processes go
+// back to level 0 with a fresh quantum, so the long ones at the bottom don't starve
+class MlfqPolicy implements SchedulingPolicy {
+  private static final long serialVersionUID = 1L;
+  static final int[] DEFAULT_QUANTA = {4, 8, 16};
+  public static final int DEFAULT_BOOST_PERIOD = 200;
+  private final int[] quanta; // Level -> quantum
+  private final int boostPeriod; // 0 for no boost
+
+  public MlfqPolicy() {
+    this(DEFAULT_QUANTA, DEFAULT_BOOST_PERIOD);
+  }
+
+  public MlfqPolicy(int[] quanta, int boostPeriod) {
+    if (quanta.length == 0) {
+      throw new IllegalArgumentException("At least one level is needed");
+    }
+    for (int quantum : quanta) {
+      if (quantum < 1) {
+        throw new IllegalArgumentException("Quantums must be positive");
+      }
+    }
+    if (boostPeriod < 0) {
+      throw new IllegalArgumentException("Negative boost period");
+    }
+    this.quanta = quanta.clone();
+    this.boostPeriod = boostPeriod;
+  }
+
+  @Override
+  public String getName() {
+    return "MLFQ";
+  }
+
+  @Override
+  public PolicyRun newRun() {
+    return new Run(quanta, boostPeriod);
+  }
+
+  @Override
+  public void writeParameters(DataOutput out) throws IOException {
+    out.writeInt(quanta.length);
+    for (int quantum : quanta) {
+      out.writeInt(quantum);
+    }
+    out.writeInt(boostPeriod);
+  }
+
+  // A process is keyed on the boost count when it became ready, then on its level. A boost leaves the ready
+  // queue as it is: processes queued before it come first, in the order of their levels, and all read as
+  // level 0 when compared with the running process. So a boost is O(1) whatever the number of processes
+  private static final class Run extends PolicyRun {
+    private static final long serialVersionUID = 1L;
+    private final int[] quanta;
+    private final int boostPeriod;
+    private int[] levels = new int[16]; // Id -> level
+    private int[] quantums = new int[16]; // Id -> quantum left at its level
+    private int[] epochs = new int[16]; // Id -> boost count when its level was set
+    private int epoch; // Boosts so far
+    private int nextBoost;
+
+    Run(int[] quanta, int boostPeriod) {
+      this.quanta = quanta;
+      this.boostPeriod = boostPeriod;
+      this.nextBoost = boostPeriod == 0 ? SchedulerRun.NEVER : boostPeriod;
+    }
+
+    private void setLevel(int id, int level) {
+      levels[id] = level;
+      quantums[id] = quanta[level];
+      epochs[id] = epoch;
+    }
+
+    private int levelOf(long key) {
+      return (int) (key >>> 32) == epoch ? (int) key : 0;
+    }
+
+    @Override
+    protected void onArrival(int id) {
+      if (id >= levels.length) {
+        int capacity = Math.max(id + 1, levels.length * 2);
+        levels = Arrays.copyOf(levels, capacity);
+        quantums = Arrays.copyOf(quantums, capacity);
+        epochs = Arrays.copyOf(epochs, capacity);
+      }
+      setLevel(id, 0);
+    }
+
+    @Override
+    protected long sortKey(int id) {
+      return IndexedHeap.packKey(epochs[id], levels[id]);
+    }
+
+    @Override
+    protected boolean isPreemptive() {
+      return true;
+    }
+
+    @Override
+    protected boolean isPreempting(long readyKey, long runningKey) {
+      return levelOf(readyKey) < levelOf(runningKey);
+    }
+
+    // Down a level, the process keeps the cpu while nobody waits at that level or above
+    @Override
+    protected boolean isYieldingTo(long readyKey, long runningKey) {
+      return levelOf(readyKey) <= levelOf(runningKey);
+    }
+
+    @Override
+    protected void onDispatch(int id) {
+      if (epochs[id] != epoch) {
+        setLevel(id, 0);
+      }
+    }
+
+    @Override
+    protected int timeSlice(int id) {
+      return quantums[id];
+    }
+
+    @Override
+    protected void onRun(int id, int from, int to) {
+      quantums[id] -= to - from;
+    }
+
+    @Override
+    protected void onSliceEnd(int id) {
+      setLevel(id, Math.min(levels[id] + 1, quanta.length - 1));
+    }
+
+    @Override
+    protected int nextTimer() {
+      return nextBoost;
+    }
+
+    @Override
+    protected void onTimer(int t) {
+      epoch += 1;
+      int running = context.getRunningProcess();
+      if (running != SchedulerRun.NONE) {
+        setLevel(running, 0);
+      }
+      long boost = ((long) t / boostPeriod + 1) * boostPeriod;
+      nextBoost = (int) Math.min(boost, SchedulerRun.NEVER);
+    }
+  }
+
+}
+
+// Completely fair scheduler: the process with the least virtual runtime runs. Virtual runtime grows with
+// the time run divided by the weight of the process, its priority being its nice value (lower runs more,
+// clamped to [-20, 19], weights as in Linux). A process runs for its share of targetLatency, at least
+// minGranularity, and a newcomer starts at the least virtual runtime so it neither starves others nor waits
+// behind everyone. The ready queue is a heap of virtual runtimes, O(log n) per event
+class CfsPolicy implements SchedulingPolicy {
+  private static final long serialVersionUID = 1L;
+  public static final int DEFAULT_TARGET_LATENCY = 24;
+  public static final int DEFAULT_MIN_GRANULARITY = 3;
+  private static final int NICE_0_WEIGHT = 1024;
+  private static final int[] WEIGHTS = new int[40]; // Nice + 20 -> weight
+  private final int targetLatency;
+  private final int minGranularity;
+
+  static {
+    for (int nice = -20; nice < 20; ++nice) {
+      WEIGHTS[nice + 20] = (int) Math.round(NICE_0_WEIGHT / Math.pow(1.25, nice));
+    }
+  }
+
+  public CfsPolicy() {
+    this(DEFAULT_TARGET_LATENCY, DEFAULT_MIN_GRANULARITY);
+  }
+
+  public CfsPolicy(int targetLatency, int minGranularity) {
+    if (minGranularity < 1 || targetLatency < minGranularity) {
+      throw new IllegalArgumentException("Need 1 <= minGranularity <= targetLatency");
+    }
+    this.targetLatency = targetLatency;
+    this.minGranularity = minGranularity;
+  }
+
+  @Override
+  public String getName() {
+    return "CFS";
+  }
+
+  @Override
+  public PolicyRun newRun() {
+    return new Run(targetLatency, minGranularity);
+  }
+
+  @Override
+  public void writeParameters(DataOutput out) throws IOException {
+    out.writeInt(targetLatency);
+    out.writeInt(minGranularity);
+  }
+
+  private static final class Run extends PolicyRun {
+    private static final long serialVersionUID = 1L;
+    private final int targetLatency;
+    private final int minGranularity;
+    private final long wakeupGranularity; // In virtual runtime, how far ahead the running process must be
+    private long[] virtualRuntimes = new long[16]; // Id -> virtual runtime, in 1/1024 time units at nice 0
+    private long minVirtualRuntime; // Never decreases
+    private long totalWeight; // Of the ready and running processes
+
+    Run(int targetLatency, int minGranularity) {
+      this.targetLatency = targetLatency;
+      this.minGranularity = minGranularity;
+      this.wakeupGranularity = (long) minGranularity * NICE_0_WEIGHT;
+    }
+
+    private int weightOf(int id) {
+      return WEIGHTS[Math.max(-20, Math.min(19, context.getPriority(id))) + 20];
+    }
+
+    private void updateMinVirtualRuntime() {
+      int running = context.getRunningProcess();
+      long least = Math.min(running == SchedulerRun.NONE ? Long.MAX_VALUE : virtualRuntimes[running],
+          context.peekReadyKey());
+      if (least != Long.MAX_VALUE) {
+        minVirtualRuntime = Math.max(minVirtualRuntime, least);
+      }
+    }
+
+    @Override
+    protected void onArrival(int id) {
+      if (id >= virtualRuntimes.length) {
+        virtualRuntimes = Arrays.copyOf(virtualRuntimes, Math.max(id + 1, virtualRuntimes.length * 2));
+      }
+      updateMinVirtualRuntime();
+      virtualRuntimes[id] = minVirtualRuntime;
+      totalWeight += weightOf(id);
+    }
+
+    @Override
+    protected long sortKey(int id) {
+      return virtualRuntimes[id];
+    }
+
+    @Override
+    protected boolean isPreemptive() {
+      return true;
+    }
+
+    @Override
+    protected boolean isPreempting(long readyKey, long runningKey) {
+      return readyKey + wakeupGranularity < runningKey;
+    }
+
+    // The process share of the target latency
+    @Override
+    protected int timeSlice(int id) {
+      return (int) Math.max(minGranularity, targetLatency * weightOf(id) / totalWeight);
+    }
+
+    @Override
+    protected void onRun(int id, int from, int to) {
+      virtualRuntimes[id] += (long) (to - from) * NICE_0_WEIGHT * NICE_0_WEIGHT / weightOf(id);
+    }
+
+    @Override
+    protected void onLeave(int id) {
+      totalWeight -= weightOf(id);
+    }
+  }
+
+}
+
+// How a multi-core scheduler spreads new arrivals over its cores
+enum LoadBalancing {
+  ROUND_ROBIN, // Each arrival goes to the next core in turn
+  LEAST_LOADED // Each arrival goes to the core with the fewest processes left to run
+}
+
+// N cpus, each run by its own single-core scheduler with its own ready queue. The cores move forward in
+// lock step from event to event; a process stays on the core it was given unless an idle core steals it
+// from the busiest one, it then spends migrationCost time units in flight before the thief can run it
+class MultiCoreScheduler extends Scheduler {
+  private static final long serialVersionUID = 1L;
+  private final int coreCount;
+  private final Scheduler coreScheduler; // Every core runs its own run of it
+  private final int migrationCost;
+  private final LoadBalancing loadBalancing;
+  private final boolean isWorkStealing;
+
+  private static final class Migration implements Serializable {
+    private static final long serialVersionUID = 1L;
+    final Process process;
+    final long sequence;
+    final int burstTime;
+    final int priority;
+    final int core;
+    final int landingTime;
+
+    Migration(Process process, long sequence, int burstTime, int priority, int core, int landingTime) {
+      this.process = process;
+      this.sequence = sequence;
+      this.burstTime = burstTime;
+      this.priority = priority;
+      this.core = core;
+      this.landingTime = landingTime;
+    }
+  }
+
+  public MultiCoreScheduler(int coreCount, Scheduler coreScheduler, int migrationCost,
+                            LoadBalancing loadBalancing, boolean isWorkStealing) {
+    if (coreCount < 1) {
+      throw new IllegalArgumentException("At least one core is needed");
+    }
+    this.coreCount = coreCount;
+    this.coreScheduler = coreScheduler;
+    this.migrationCost = migrationCost;
+    this.loadBalancing = loadBalancing;
+    this.isWorkStealing = isWorkStealing;
+  }
+
+  @Override
+  public String getName() {
+    return coreScheduler.getName() + " x" + coreCount;
+  }
+
+  @Override
+  public boolean isReproducible() {
+    return coreScheduler.isReproducible();
+  }
+
+  @Override
+  public int getContextSwitchingTime() {
+    return coreScheduler.getContextSwitchingTime();
+  }
+
+  @Override
+  protected void writeParameters(DataOutput out) throws IOException {
+    out.writeInt(coreCount);
+    coreScheduler.writeConfiguration(out);
+    out.writeInt(migrationCost);
+    out.writeUTF(loadBalancing.name());
+    out.writeBoolean(isWorkStealing);
+  }
+
+  @Override
+  protected SchedulerRun newRun() {
+    return new Run();
+  }
+
+  private final class Run extends SchedulerRun {
+    private static final long serialVersionUID = 1L;
+    private final SchedulerRun[] cores = new SchedulerRun[coreCount];
+    private final int[] incomingCounts = new int[coreCount]; // Core -> processes migrating to it
+    // Landing order, every migration takes migrationCost
+    private final ArrayDeque<Migration> migrations = new ArrayDeque<>();
+    private int nextCore; // Next core of round robin placement
+
+    Run() {
+      super(0);
+    }
+
+    @Override
+    protected void onStart() {
+      for (int core = 0; core < cores.length; ++core) {
+        cores[core] = coreScheduler.start(newCoreListener(core));
+      }
+    }
+
+    // The cores lost their listener in the checkpoint too
+    @Override
+    protected void onResume() {
+      for (int core = 0; core < cores.length; ++core) {
+        cores[core].resume(newCoreListener(core));
+      }
+    }
+
+    private ClusterListener newCoreListener(int core) {
+      return new ClusterListener() {
+        @Override
+        public void onCluster(Cluster cluster) {
+          cluster.setCore(core);
+          listener.onCluster(cluster);
+        }
+
+        @Override
+        public void onContextSwitch(int ignored, int startTime, int endTime) {
+          listener.onContextSwitch(core, startTime, endTime);
+        }
+      };
+    }
+
+    // Arrivals are handed to a core right away, the cores keep no global queue
+    @Override
+    protected void addArrivedProcess(int id) {
+      cores[pickCore()].submit(processes.getProcess(id), processes.getSequence(id), processes.getArrivalTime(id),
+          processes.getBurstTime(id), processes.getPriority(id));
+      processes.release(id);
+    }
+
+    private int pickCore() {
+      if (loadBalancing == LoadBalancing.ROUND_ROBIN) {
+        int core = nextCore;
+        nextCore = (nextCore + 1) % cores.length;
+        return core;
+      }
+      int best = 0;
+      for (int core = 1; core < cores.length; ++core) {
+        if (cores[core].load() + incomingCounts[core] < cores[best].load() + incomingCounts[best]) {
+          best = core;
+        }
+      }
+      return best;
+    }
+
+    @Override
+    protected int nextDeadline() {
+      int deadline = migrations.isEmpty() ? NEVER : migrations.peek().landingTime;
+      for (SchedulerRun core : cores) {
+        deadline = Math.min(deadline, core.nextEventTime());
+      }
+      return deadline;
+    }
+
+    @Override
+    protected void handleEventAt(int t) {
+      // Arrivals and landings at t reach the cores before the cores handle t, as on a single core
+      for (SchedulerRun core : cores) {
+        core.runEventsBefore(t);
+      }
+      while (!migrations.isEmpty() && migrations.peek().landingTime <= t) {
+        land(migrations.poll());
+      }
+      admitArrivalsUntil(t);
+      for (SchedulerRun core : cores) {
+        core.runEventsBefore(t + 1);
+      }
+      if (isWorkStealing) {
+        stealForIdleCores(t);
+      }
+    }
+
+    private void stealForIdleCores(int t) {
+      for (int thief = 0; thief < cores.length; ++thief) {
+        if (!cores[thief].isIdle() || incomingCounts[thief] > 0) { continue; }
+        int victim = -1;
+        for (int core = 0; core < cores.length; ++core) {
+          int readyCount = cores[core].readyCount();
+          if (readyCount > 0 && (victim == -1 || readyCount > cores[victim].readyCount())) {
+            victim = core;
+          }
+        }
+        if (victim == -1) { return; }
+        migrate(victim, thief, t);
+      }
+    }
+
+    private void migrate(int victim, int thief, int t) {
+      SchedulerRun core = cores[victim];
+      int id = core.removeStealableProcess();
+      Migration migration = new Migration(core.processes.getProcess(id), core.processes.getSequence(id),
+          core.processes.getBurstTime(id), core.processes.getPriority(id), thief, t + migrationCost);
+      core.processes.release(id);
+      incomingCounts[thief] += 1;
+      count(Counter.MIGRATIONS);
+      if (migrationCost == 0) {
+        land(migration);
+        cores[thief].runEventsBefore(t + 1);
+      } else {
+        migrations.add(migration);
+      }
+    }
+
+    private void land(Migration migration) {
+      incomingCounts[migration.core] -= 1;
+      cores[migration.core].submit(migration.process, migration.sequence, migration.landingTime,
+          migration.burstTime, migration.priority);
+    }
+
+    // Processes are never queued here but on the cores
+    @Override
+    protected int readyCount() {
+      return 0;
+    }
+
+    // The cores count for the whole machine, simulated time is the machine's
+    @Override
+    protected long[] getCounts() {
+      long[] totals = super.getCounts();
+      for (SchedulerRun core : cores) {
+        long[] coreCounts = core.getCounts();
+        for (Counter counter : Counter.values()) {
+          if (counter != Counter.SIMULATED_TIME) {
+            totals[counter.ordinal()] += coreCounts[counter.ordinal()];
+          }
+        }
+      }
+      return totals;
+    }
+
+    @Override
+    protected int removeStealableProcess() {
+      return NONE;
+    }
+  }
+
+}
+
+interface ClusterListener {
+  void onCluster(Cluster cluster);
+
+  // The cpu spent [startTime, endTime) switching to the process of the next cluster, sent when the switch starts
+  default void onContextSwitch(int core, int startTime, int endTime) {}
+}
+
+class Cluster implements Serializable {
+  private static final long serialVersionUID = 1L;
+  protected Process process;
+  protected int pid;
+  protected int core; // Cpu that ran the cluster, always 0 on a single core
+  protected int startTime;
+  protected int endTime;
+
+  public Cluster(Process process, int pid, int startTime) {
+    this.process = process;
+    this.pid = pid;
+    this.startTime = startTime;
+    this.endTime = -1;
+  }
+
+  public Process getProcess() {
+    return process;
+  }
+
+  public int getPid() {
+    return pid;
+  }
+
+  public int getStartTime() {
+    return startTime;
+  }
+
+  public int getCore() {
+    return core;
+  }
+
+  public void setCore(int core) {
+    this.core = core;
+  }
+
+  public int getEndTime() {
+    return endTime;
+  }
+
+  public void setEndTime(int endTime) {
+    this.endTime = endTime;
+  }
+
+  public int getTurnaroundTime() {
+    return this.endTime - this.startTime;
+  }
+
+  // Quantums only exist in round robin, -1 elsewhere
+  public int getStartQ() {
+    return -1;
+  }
+
+  public int getEndQ() {
+    return -1;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append('|');
+    sb.append(startTime);
+    // append half turnaround spaces
+    for (int i = 0; i < Math.ceil(getTurnaroundTime() / 2.0); i++) {
+      sb.append(" ");
+    }
+    sb.append(process.getName());
+    // append the remaining spaces
+    for (int i = 0; i < Math.ceil(getTurnaroundTime() / 2.0); i++) {
+      sb.append(" ");
+    }
+    sb.append(endTime);
+    sb.append('|');
+    return sb.toString();
+  }
+
+}
+
+class ClusterQ extends Cluster {
+  private static final long serialVersionUID = 1L;
+  private int startQ;
+  private int endQ;
+
+  public ClusterQ(Process p, int pid, int startTime, int startQ) {
+    super(p, pid, startTime);
+    this.startQ = startQ;
+    this.endQ = -1;
+  }
+
+  public void setEndQ(int endQ) {
+    this.endQ = endQ;
+  }
+
+  @Override
+  public int getStartQ() {
+    return startQ;
+  }
+
+  @Override
+  public int getEndQ() {
+    return endQ;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append('|');
+    sb.append(startTime);
+    // append half turnaround spaces
+    for (int i = 0; i < Math.ceil(getTurnaroundTime() / 2.0); i++) {
+      sb.append(" ");
+    }
+    sb.append(startQ).append("->").append(process.getName()).append("->").append(endQ);
+    // append the remaining spaces
+    for (int i = 0; i < Math.ceil(getTurnaroundTime() / 2.0); i++) {
+      sb.append(" ");
+    }
+    sb.append(endTime);
+    sb.append('|');
+    return sb.toString();
+  }
+}
+
+// Counts of non-negative values in log-linear buckets, as HdrHistogram does: values below 128 have their
+// own bucket, larger ones share a bucket with values within 1/128 of them. Memory depends on the largest
+// value only, and histograms of separate runs merge by adding counts
+class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 7;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private long[] counts;
+  private long totalCount;
+  private long max;
+
+  public LatencyHistogram() {
+    counts = new long[2 * SUB_BUCKET_COUNT];
+  }
+
+  public void record(long value) {
+    if (value < 0) {
+      throw new IllegalArgumentException("Negative value " + value);
+    }
+    int index = indexOf(value);
+    if (index >= counts.length) {
+      counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length * 2));
+    }
+    counts[index] += 1;
+    totalCount += 1;
+    max = Math.max(max, value);
+  }
+
+  public void merge(LatencyHistogram other) {
+    if (other.counts.length > counts.length) {
+      counts = Arrays.copyOf(counts, other.counts.length);
+    }
+    for (int i = 0; i < other.counts.length; ++i) {
+      counts[i] += other.counts[i];
+    }
+    totalCount += other.totalCount;
+    max = Math.max(max, other.max);
+  }
+
+  private static int indexOf(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  // Largest value that falls in the bucket
+  private static long highestValueAt(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_BUCKET_COUNT - 1;
+    long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+  public long getTotalCount() {
+    return totalCount;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  // Smallest recorded value (up to the bucket precision) that percentile percent of the values don't exceed
+  public long getValueAtPercentile(double percentile) {
+    if (totalCount == 0) { return 0; }
+    long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+    long seen = 0;
+    for (int i = 0; i < counts.length; ++i) {
+      seen += counts[i];
+      if (seen >= target) {
+        return Math.min(highestValueAt(i), max);
+      }
+    }
+    return max;
+  }
+
+}
+
+// Latency distribution of a schedule: waiting, turnaround and response time histograms, Jain's fairness
+// index of the share of its turnaround each process spent on the cpu, the processes that starved (slowed
+// down more than the threshold) and the context switches of every core. Summaries of separate runs merge
+class LatencySummary {
+  private final LatencyHistogram waitingTimes = new LatencyHistogram();
+  private final LatencyHistogram turnAroundTimes = new LatencyHistogram();
+  private final LatencyHistogram responseTimes = new LatencyHistogram();
+  private long finishedCount;
+  private double shareSum;
+  private double shareSquareSum;
+  private long starvedCount;
+  private long contextSwitches;
+  private long busyTime; // Cpu time given to processes, over all cores
+  private long overheadTime; // Cpu time spent in context switches, over all cores
+  private long firstTime = Long.MAX_VALUE; // Span from the first segment start to the last segment end
+  private long lastTime = Long.MIN_VALUE;
+  private int coreCount;
+
+  public void recordResponse(long responseTime) {
+    responseTimes.record(responseTime);
+  }
+
+  public void recordFinish(long waitingTime, long turnAroundTime, long cpuTime, double starvationSlowdown) {
+    waitingTimes.record(waitingTime);
+    turnAroundTimes.record(turnAroundTime);
+    double share = turnAroundTime == 0 ? 1 : (double) cpuTime / turnAroundTime;
+    finishedCount += 1;
+    shareSum += share;
+    shareSquareSum += share * share;
+    if (share * starvationSlowdown < 1) {
+      starvedCount += 1;
+    }
+  }
+
+  public void recordContextSwitch() {
+    contextSwitches += 1;
+  }
+
+  public void recordBusy(int core, long startTime, long endTime) {
+    busyTime += endTime - startTime;
+    recordSpan(core, startTime, endTime);
+  }
+
+  public void recordOverhead(int core, long startTime, long endTime) {
+    overheadTime += endTime - startTime;
+    recordSpan(core, startTime, endTime);
+  }
+
+  private void recordSpan(int core, long startTime, long endTime) {
+    firstTime = Math.min(firstTime, startTime);
+    lastTime = Math.max(lastTime, endTime);
+    coreCount = Math.max(coreCount, core + 1);
+  }
+
+  public void merge(LatencySummary other) {
+    waitingTimes.merge(other.waitingTimes);
+    turnAroundTimes.merge(other.turnAroundTimes);
+    responseTimes.merge(other.responseTimes);
+    finishedCount += other.finishedCount;
+    shareSum += other.shareSum;
+    shareSquareSum += other.shareSquareSum;
+    starvedCount += other.starvedCount;
+    contextSwitches += other.contextSwitches;
+    busyTime += other.busyTime;
+    overheadTime += other.overheadTime;
+    firstTime = Math.min(firstTime, other.firstTime);
+    lastTime = Math.max(lastTime, other.lastTime);
+    coreCount = Math.max(coreCount, other.coreCount);
+  }
+
+  public LatencyHistogram getWaitingTimes() {
+    return waitingTimes;
+  }
+
+  public LatencyHistogram getTurnAroundTimes() {
+    return turnAroundTimes;
+  }
+
+  public LatencyHistogram getResponseTimes() {
+    return responseTimes;
+  }
+
+  public long getFinishedCount() {
+    return finishedCount;
+  }
+
+  // 1 when every process got the same share, down to 1/n when one process got it all
+  public double getJainFairnessIndex() {
+    return finishedCount == 0 ? 1 : shareSum * shareSum / (finishedCount * shareSquareSum);
+  }
+
+  public long getStarvedCount() {
+    return starvedCount;
+  }
+
+  public long getContextSwitches() {
+    return contextSwitches;
+  }
+
+  public long getOverheadTime() {
+    return overheadTime;
+  }
+
+  // Share of the cpu time of every core from the first segment to the last one that went to processes
+  public double getCpuUtilization() {
+    return share(busyTime);
+  }
+
+  // Share of that time lost to context switches
+  public double getOverheadShare() {
+    return share(overheadTime);
+  }
+
+  private double share(long time) {
+    return lastTime <= firstTime ? 0 : time / ((double) (lastTime - firstTime) * coreCount);
+  }
+
+  // One table for all the summaries, the percentiles of each time are p50/p90/p99/p99.9
+  public static void print(List<String> names, List<LatencySummary> summaries) {
+    StringBuilder out = new StringBuilder();
+    out.append(String.format("%-22s %-31s %-31s %-31s %8s %8s %10s %8s %10s%n", "Scheduler",
+        "Waiting p50/90/99/99.9", "Turnaround p50/90/99/99.9", "Response p50/90/99/99.9", "Jain", "Starved",
+        "Switches", "Cpu %", "Overhead %"));
+    for (int i = 0; i < names.size(); ++i) {
+      LatencySummary summary = summaries.get(i);
+      out.append(String.format("%-22s %-31s %-31s %-31s %8.4f %8d %10d %8.2f %10.2f%n", names.get(i),
+          percentiles(summary.waitingTimes), percentiles(summary.turnAroundTimes),
+          percentiles(summary.responseTimes), summary.getJainFairnessIndex(), summary.starvedCount,
+          summary.contextSwitches, 100 * summary.getCpuUtilization(), 100 * summary.getOverheadShare()));
+    }
+    System.out.print(out);
+  }
+
+  private static String percentiles(LatencyHistogram histogram) {
+    return histogram.getValueAtPercentile(50) + "/" + histogram.getValueAtPercentile(90) + "/"
+        + histogram.getValueAtPercentile(99) + "/" + histogram.getValueAtPercentile(99.9);
+  }
+
+}
+
+// Per process turnaround, waiting and response times gathered in one pass as clusters arrive. Everything
+// is kept in primitive arrays indexed by pid, so memory follows the process count, not the cluster count.
+// The arrays are a ring over the pids from the oldest one kept to the newest one seen: streaming metrics
+// drop each finished process once every older pid finished too, so they only hold the unfinished window.
+// The latency summary is filled along the way, each process is recorded once it got its whole burst
+class ScheduleMetrics implements ClusterListener {
+  public static final double DEFAULT_STARVATION_SLOWDOWN = 10;
+  private String[] names; // Slot -> name, null until the process first runs
+  private int[] arrivalTimes;
+  private int[] firstStartTimes;
+  private int[] lastEndTimes;
+  private long[] cpuTimes;
+  private boolean[] finished;
+  private int oldestPid; // Pids below it were dropped
+  private int pidLimit; // Pids below it may have been seen
+  private int processCount;
+  private int finishedCount;
+  private long turnAroundSum;
+  private long waitingSum;
+  private long responseSum;
+  private final boolean isStreaming;
+  private final LatencySummary summary;
+  private final double starvationSlowdown; // A process slowed down more than that starved
+  private int[] lastPids; // Core -> pid of its last cluster, -1 before the first one
+
+  public ScheduleMetrics() {
+    this(DEFAULT_STARVATION_SLOWDOWN, false);
+  }
+
+  // Per process times are only kept while the process runs, the averages and the summary cover everyone
+  public static ScheduleMetrics streaming() {
+    return new ScheduleMetrics(DEFAULT_STARVATION_SLOWDOWN, true);
+  }
+
+  public ScheduleMetrics(double starvationSlowdown, boolean isStreaming) {
+    this.summary = new LatencySummary();
+    this.starvationSlowdown = starvationSlowdown;
+    this.isStreaming = isStreaming;
+    this.lastPids = new int[] {-1};
+    names = new String[16];
+    arrivalTimes = new int[16];
+    firstStartTimes = new int[16];
+    lastEndTimes = new int[16];
+    cpuTimes = new long[16];
+    finished = new boolean[16];
+  }
+
+  private int slot(int pid) {
+    return pid & (names.length - 1);
+  }
+
+  @Override
+  public void onCluster(Cluster cluster) {
+    int pid = cluster.getPid();
+    if (pid - oldestPid >= names.length) {
+      grow(pid - oldestPid + 1);
+    }
+    int slot = slot(pid);
+    if (pid >= pidLimit || names[slot] == null) {
+      names[slot] = cluster.getProcess().getName();
+      arrivalTimes[slot] = cluster.getProcess().getArrivalTime();
+      firstStartTimes[slot] = cluster.getStartTime();
+      cpuTimes[slot] = 0;
+      pidLimit = Math.max(pidLimit, pid + 1);
+      processCount += 1;
+      responseSum += getResponseTime(pid);
+      summary.recordResponse(getResponseTime(pid));
+    }
+    int core = cluster.getCore();
+    if (core >= lastPids.length) {
+      int oldLength = lastPids.length;
+      lastPids = Arrays.copyOf(lastPids, core + 1);
+      Arrays.fill(lastPids, oldLength, lastPids.length, -1);
+    }
+    if (lastPids[core] != -1 && lastPids[core] != pid) {
+      summary.recordContextSwitch();
+    }
+    lastPids[core] = pid;
+    summary.recordBusy(core, cluster.getStartTime(), cluster.getEndTime());
+    lastEndTimes[slot] = cluster.getEndTime();
+    cpuTimes[slot] += cluster.getTurnaroundTime();
+    // A process holds the cpu for at least one time unit, even without burst
+    if (cpuTimes[slot] >= Math.max(1, cluster.getProcess().getBurstTime())) {
+      finish(pid);
+    }
+  }
+
+  @Override
+  public void onContextSwitch(int core, int startTime, int endTime) {
+    summary.recordOverhead(core, startTime, endTime);
+  }
+
+  private void finish(int pid) {
+    long turnAroundTime = getTurnAroundTime(pid);
+    long waitingTime = getWaitingTime(pid);
+    finishedCount += 1;
+    turnAroundSum += turnAroundTime;
+    waitingSum += waitingTime;
+    summary.recordFinish(waitingTime, turnAroundTime, cpuTimes[slot(pid)], starvationSlowdown);
+    finished[slot(pid)] = true;
+    while (isStreaming && oldestPid < pidLimit && finished[slot(oldestPid)]) {
+      names[slot(oldestPid)] = null;
+      finished[slot(oldestPid)] = false;
+      oldestPid += 1;
+    }
+  }
+
+  public LatencySummary getSummary() {
+    return summary;
+  }
+
+  // Lays the kept pids out again in a ring of at least minCapacity slots
+  private void grow(int minCapacity) {
+    int capacity = names.length;
+    while (capacity < minCapacity) {
+      capacity *= 2;
+    }
+    String[] oldNames = names;
+    int[] oldArrivalTimes = arrivalTimes;
+    int[] oldFirstStartTimes = firstStartTimes;
+    int[] oldLastEndTimes = lastEndTimes;
+    long[] oldCpuTimes = cpuTimes;
+    boolean[] oldFinished = finished;
+    int oldMask = oldNames.length - 1;
+    names = new String[capacity];
+    arrivalTimes = new int[capacity];
+    firstStartTimes = new int[capacity];
+    lastEndTimes = new int[capacity];
+    cpuTimes = new long[capacity];
+    finished = new boolean[capacity];
+    for (int pid = oldestPid; pid < pidLimit; ++pid) {
+      int from = pid & oldMask;
+      int to = slot(pid);
+      names[to] = oldNames[from];
+      arrivalTimes[to] = oldArrivalTimes[from];
+      firstStartTimes[to] = oldFirstStartTimes[from];
+      lastEndTimes[to] = oldLastEndTimes[from];
+      cpuTimes[to] = oldCpuTimes[from];
+      finished[to] = oldFinished[from];
+    }
+  }
+
+  public int getProcessCount() {
+    return processCount;
+  }
+
+  public int getPidLimit() {
+    return pidLimit;
+  }
+
+  // False for processes streaming metrics already dropped
+  public boolean hasRun(int pid) {
+    return pid >= oldestPid && pid < pidLimit && names[slot(pid)] != null;
+  }
+
+  public String getName(int pid) {
+    return names[slot(pid)];
+  }
+
+  public long getTurnAroundTime(int pid) {
+    return (long) lastEndTimes[slot(pid)] - arrivalTimes[slot(pid)];
+  }
+
+  // Time spent ready but not on the cpu
+  public long getWaitingTime(int pid) {
+    return getTurnAroundTime(pid) - cpuTimes[slot(pid)];
+  }
+
+  // Time from arrival to the first time on the cpu
+  public long getResponseTime(int pid) {
+    return (long) firstStartTimes[slot(pid)] - arrivalTimes[slot(pid)];
+  }
+
+  // Over the finished processes
+  public double getAvgTurnAroundTime() {
+    return turnAroundSum / (double) finishedCount;
+  }
+
+  public double getAvgWaitingTime() {
+    return waitingSum / (double) finishedCount;
+  }
+
+  // Over the processes that ran at least once
+  public double getAvgResponseTime() {
+    return responseSum / (double) processCount;
+  }
+
+}
+
+// What the runs count with instrumentation on
+enum Counter {
+  EVENTS("Events"), // Times the scheduler acted at, idle time is skipped and not counted
+  SIMULATED_TIME("SimulatedTime"),
+  DISPATCHES("Dispatches"),
+  PREEMPTIONS("Preemptions"), // The cpu was taken from a process that had not finished
+  CONTEXT_SWITCHES("ContextSwitches"),
+  HEAP_OPERATIONS("HeapOperations"),
+  AGING_REKEYS("AgingRekeys"),
+  QUANTUM_ADJUSTMENTS("QuantumAdjustments"),
+  MIGRATIONS("Migrations");
+
+  final String attribute; // JMX attribute name
+
+  Counter(String attribute) {
+    this.attribute = attribute;
+  }
+}
+
+// Counts of every run of a scheduler, kept by scheduler name and readable through JMX. A run counts in plain
+// longs and adds them here once it finished, so runs on many threads only share the LongAdders.
+// Off unless -Dscheduler.instrumentation=true: ENABLED is a constant, so the JIT removes what it guards
+final class SchedulerCounters implements DynamicMBean {
+  static final boolean ENABLED = Boolean.getBoolean("scheduler.instrumentation");
+  private static final Counter[] COUNTERS = Counter.values();
+  private static final ConcurrentHashMap<String, SchedulerCounters> BY_NAME = new ConcurrentHashMap<>();
+  private final String name;
+  private final LongAdder runs = new LongAdder();
+  private final LongAdder[] adders = new LongAdder[COUNTERS.length]; // Counter -> total
+
+  private SchedulerCounters(String name) {
+    this.name = name;
+    for (int i = 0; i < adders.length; ++i) {
+      adders[i] = new LongAdder();
+    }
+  }
+
+  // Registered with the platform MBean server on the first use of the name
+  public static SchedulerCounters of(String name) {
+    return BY_NAME.computeIfAbsent(name, SchedulerCounters::register);
+  }
+
+  private static SchedulerCounters register(String name) {
+    SchedulerCounters counters = new SchedulerCounters(name);
+    try {
+      ObjectName objectName = new ObjectName("scheduler:type=Counters,name=" + ObjectName.quote(name));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(counters, objectName);
+    } catch (JMException e) {
+      // The counters still work without JMX
+    }
+    return counters;
+  }
+
+  // Snapshots of every scheduler that finished a run, by name
+  public static SortedMap<String, Map<String, Long>> snapshotAll() {
+    TreeMap<String, Map<String, Long>> snapshots = new TreeMap<>();
+    BY_NAME.forEach((name, counters) -> snapshots.put(name, counters.snapshot()));
+    return snapshots;
+  }
+
+  public static void print(PrintStream out) {
+    out.printf("%-22s %8s", "Scheduler", "Runs");
+    for (Counter counter : COUNTERS) {
+      out.printf(" %" + Math.max(10, counter.attribute.length()) + "s", counter.attribute);
+    }
+    out.println();
+    snapshotAll().forEach((name, snapshot) -> {
+      out.printf("%-22s %8d", name, snapshot.get("Runs"));
+      for (Counter counter : COUNTERS) {
+        out.printf(" %" + Math.max(10, counter.attribute.length()) + "d", snapshot.get(counter.attribute));
+      }
+      out.println();
+    });
+  }
+
+  public void add(long[] counts) {
+    runs.increment();
+    for (int i = 0; i < counts.length; ++i) {
+      if (counts[i] != 0) {
+        adders[i].add(counts[i]);
+      }
+    }
+  }
+
+  // Runs then every counter, in Counter order
+  public Map<String, Long> snapshot() {
+    LinkedHashMap<String, Long> snapshot = new LinkedHashMap<>();
+    snapshot.put("Runs", runs.sum());
+    for (Counter counter : COUNTERS) {
+      snapshot.put(counter.attribute, adders[counter.ordinal()].sum());
+    }
+    return snapshot;
+  }
+
+  @Override
+  public Object getAttribute(String attribute) throws AttributeNotFoundException {
+    Long value = snapshot().get(attribute);
+    if (value == null) {
+      throw new AttributeNotFoundException(attribute);
+    }
+    return value;
+  }
+
+  @Override
+  public AttributeList getAttributes(String[] attributes) {
+    Map<String, Long> snapshot = snapshot();
+    AttributeList list = new AttributeList();
+    for (String attribute : attributes) {
+      if (snapshot.containsKey(attribute)) {
+        list.add(new Attribute(attribute, snapshot.get(attribute)));
+      }
+    }
+    return list;
+  }
+
+  // Read only
+  @Override
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+    throw new AttributeNotFoundException("Read only attribute " + attribute.getName());
+  }
+
+  @Override
+  public AttributeList setAttributes(AttributeList attributes) {
+    return new AttributeList();
+  }
+
+  @Override
+  public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+    throw new ReflectionException(new NoSuchMethodException(actionName));
+  }
+
+  @Override
+  public MBeanInfo getMBeanInfo() {
+    ArrayList<MBeanAttributeInfo> attributes = new ArrayList<>();
+    for (String attribute : snapshot().keySet()) {
+      attributes.add(new MBeanAttributeInfo(attribute, "long", attribute + " of " + name, true, false, false));
+    }
+    return new MBeanInfo(getClass().getName(), "Counters of the runs of " + name,
+        attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+  }
+
+}
+
+// One per finished run, with what it counted. Recorded by the default JFR settings
+@Name("scheduler.ScheduleRun")
+@Label("Schedule Run")
+@Category("CPU Scheduler")
+class ScheduleRunEvent extends Event {
+  @Label("Scheduler")
+  String scheduler;
+  @Label("Events")
+  long events;
+  @Label("Simulated Time")
+  long simulatedTime;
+  @Label("Dispatches")
+  long dispatches;
+  @Label("Preemptions")
+  long preemptions;
+  @Label("Context Switches")
+  long contextSwitches;
+  @Label("Heap Operations")
+  long heapOperations;
+  @Label("Aging Rekeys")
+  long agingRekeys;
+  @Label("Quantum Adjustments")
+  long quantumAdjustments;
+  @Label("Migrations")
+  long migrations;
+}
+
+// One per preemption, too many for a default recording: enable scheduler.Preemption in the JFR settings
+@Name("scheduler.Preemption")
+@Label("Preemption")
+@Category("CPU Scheduler")
+@Enabled(false)
+class PreemptionEvent extends Event {
+  @Label("Scheduler")
+  String scheduler;
+  @Label("Pid")
+  int pid;
+  @Label("Simulated Time")
+  int time;
+}
+
+class Chart {
+  private ArrayList<Cluster> clusters;
+  private ArrayList<int[]> contextSwitches; // (core, start time, end time) of every context switch
+  private ScheduleMetrics metrics;
+
+  public Chart(ArrayList<Cluster> clusters) {
+    this(clusters, new ArrayList<>());
+  }
+
+  public Chart(ArrayList<Cluster> clusters, ArrayList<int[]> contextSwitches) {
+    this.clusters = clusters;
+    this.contextSwitches = contextSwitches;
+    this.metrics = new ScheduleMetrics();
+    replay(metrics);
+  }
+
+  // Runs the workload, keeping the context switches along with the clusters
+  public static Chart of(Scheduler scheduler, Workload workload) {
+    ArrayList<Cluster> clusters = new ArrayList<>();
+    ArrayList<int[]> contextSwitches = new ArrayList<>();
+    scheduler.schedule(workload, recorder(clusters, contextSwitches));
+    return new Chart(clusters, contextSwitches);
+  }
+
+  // Appends what a run reports to the lists a Chart is made of
+  static ClusterListener recorder(ArrayList<Cluster> clusters, ArrayList<int[]> contextSwitches) {
+    return new ClusterListener() {
+      @Override
+      public void onCluster(Cluster cluster) {
+        clusters.add(cluster);
+      }
+
+      @Override
+      public void onContextSwitch(int core, int startTime, int endTime) {
+        contextSwitches.add(new int[] {core, startTime, endTime});
+      }
+    };
+  }
+
+  public int getClusterCount() {
+    return clusters.size();
+  }
+
+  public int getContextSwitchCount() {
+    return contextSwitches.size();
+  }
+
+  public ScheduleMetrics getMetrics() {
+    return metrics;
+  }
+
+  public double getAvgTurnAroundTime() {
+    return metrics.getAvgTurnAroundTime();
+  }
+
+  public double getAvgWaitingTime() {
+    return metrics.getAvgWaitingTime();
+  }
+
+  public double getAvgResponseTime() {
+    return metrics.getAvgResponseTime();
+  }
+
+  // Hands the clusters to a sink in chart order, as the scheduler did while running, then the context switches
+  public void replay(ClusterListener listener) {
+    for (Cluster cluster : clusters) {
+      listener.onCluster(cluster);
+    }
+    for (int[] contextSwitch : contextSwitches) {
+      listener.onContextSwitch(contextSwitch[0], contextSwitch[1], contextSwitch[2]);
+    }
+  }
+
+  public void print() {
+    // Built in memory and written at once, a print per cluster is slow on an unbuffered System.out
+    StringBuilder out = new StringBuilder();
+    for (Cluster cluster : clusters) {
+      out.append(cluster);
+    }
+    out.append(System.lineSeparator());
+    out.append("Average turnaround time: ").append(getAvgTurnAroundTime()).append(System.lineSeparator());
+    out.append("Average waiting time: ").append(getAvgWaitingTime()).append(System.lineSeparator());
+    out.append("Average response time: ").append(getAvgResponseTime()).append(System.lineSeparator());
+    LatencySummary summary = metrics.getSummary();
+    appendPercentiles(out, "Waiting time", summary.getWaitingTimes());
+    appendPercentiles(out, "Turnaround time", summary.getTurnAroundTimes());
+    appendPercentiles(out, "Response time", summary.getResponseTimes());
+    out.append("Jain's fairness index: ").append(summary.getJainFairnessIndex()).append(System.lineSeparator());
+    out.append("Starved processes: ").append(summary.getStarvedCount()).append(System.lineSeparator());
+    out.append("Context switches: ").append(summary.getContextSwitches()).append(System.lineSeparator());
+    out.append(String.format("CPU utilization: %.2f%%, context switch overhead: %.2f%% (%d time units)%n",
+        100 * summary.getCpuUtilization(), 100 * summary.getOverheadShare(), summary.getOverheadTime()));
+    out.append("Turnaround time:").append(System.lineSeparator());
+    for (int pid = 0; pid < metrics.getPidLimit(); ++pid) {
+      if (metrics.hasRun(pid)) {
+        out.append(metrics.getName(pid)).append(": ").append(metrics.getTurnAroundTime(pid)).append(System.lineSeparator());
+      }
+    }
+    out.append("Waiting time:").append(System.lineSeparator());
+    for (int pid = 0; pid < metrics.getPidLimit(); ++pid) {
+      if (metrics.hasRun(pid)) {
+        out.append(metrics.getName(pid)).append(": ").append(metrics.getWaitingTime(pid)).append(System.lineSeparator());
+      }
+    }
+    out.append("====================================").append(System.lineSeparator());
+    System.out.print(out);
+    System.out.flush();
+  }
+
+  private static void appendPercentiles(StringBuilder out, String label, LatencyHistogram histogram) {
+    out.append(label).append(" p50/p90/p99/p99.9: ").append(histogram.getValueAtPercentile(50)).append('/')
+        .append(histogram.getValueAtPercentile(90)).append('/').append(histogram.getValueAtPercentile(99)).append('/')
+        .append(histogram.getValueAtPercentile(99.9)).append(System.lineSeparator());
+  }
+
+}
+
+// The segments of a run in primitive columns, a few bytes each instead of a Cluster object holding its
+// Process. On the first query they are sorted on start time and indexed: the largest end time so far at
+// the end of every block of BLOCK segments finds a time range with two binary searches, and per pid
+// posting lists hold the segments of each process. Context switches are segments of OVERHEAD_PID
+class Timeline implements ClusterListener {
+  static final int OVERHEAD_PID = -1;
+  private static final int BLOCK = 64;
+  private int size;
+  private int[] pids = new int[16];
+  private int[] startTimes = new int[16];
+  private int[] endTimes = new int[16];
+  private int[] cores; // Null while every segment ran on core 0
+  private int[] startQs; // Null until a cluster with quantums came, -1 for the segments without
+  private int[] endQs;
+  private String[] names = new String[16]; // Pid -> process name
+  private boolean isSorted = true; // On start time
+  private boolean isIndexed;
+  private int[] blockMaxEndTimes; // Block -> largest end time of the segments up to its last one
+  private int[] pidOffsets; // Pid -> index of its first segment in pidSegments, pid + 1 -> past its last
+  private int[] pidSegments;
+
+  public static Timeline of(Chart chart) {
+    Timeline timeline = new Timeline();
+    chart.replay(timeline);
+    return timeline;
+  }
+
+  @Override
+  public void onCluster(Cluster cluster) {
+    int pid = cluster.getPid();
+    int i = add(pid, cluster.getStartTime(), cluster.getEndTime(), cluster.getCore());
+    if (cluster instanceof ClusterQ) {
+      if (startQs == null) {
+        startQs = new int[pids.length];
+        endQs = new int[pids.length];
+        Arrays.fill(startQs, -1);
+        Arrays.fill(endQs, -1);
+      }
+      startQs[i] = ((ClusterQ) cluster).getStartQ();
+      endQs[i] = ((ClusterQ) cluster).getEndQ();
+    }
+    if (pid >= names.length) {
+      names = Arrays.copyOf(names, Math.max(pid + 1, names.length * 2));
+    }
+    if (names[pid] == null) {
+      names[pid] = cluster.getProcess().getName();
+    }
+  }
+
+  @Override
+  public void onContextSwitch(int core, int startTime, int endTime) {
+    add(OVERHEAD_PID, startTime, endTime, core);
+  }
+
+  private int add(int pid, int startTime, int endTime, int core) {
+    if (size == pids.length) {
+      int capacity = Math.max(16, size * 2);
+      pids = Arrays.copyOf(pids, capacity);
+      startTimes = Arrays.copyOf(startTimes, capacity);
+      endTimes = Arrays.copyOf(endTimes, capacity);
+      if (cores != null) {
+        cores = Arrays.copyOf(cores, capacity);
+      }
+      if (startQs != null) {
+        startQs = Arrays.copyOf(startQs, capacity);
+        endQs = Arrays.copyOf(endQs, capacity);
+        Arrays.fill(startQs, size, capacity, -1);
+        Arrays.fill(endQs, size, capacity, -1);
+      }
+    }
+    if (core != 0 && cores == null) {
+      cores = new int[pids.length];
+    }
+    if (size > 0 && startTime < startTimes[size - 1]) {
+      isSorted = false;
+    }
+    pids[size] = pid;
+    startTimes[size] = startTime;
+    endTimes[size] = endTime;
+    if (cores != null) {
+      cores[size] = core;
+    }
+    isIndexed = false;
+    return size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  // Segment i in start time order
+  public int getPid(int i) {
+    index();
+    return pids[i];
+  }
+
+  public int getStartTime(int i) {
+    index();
+    return startTimes[i];
+  }
+
+  public int getEndTime(int i) {
+    index();
+    return endTimes[i];
+  }
+
+  public int getCore(int i) {
+    index();
+    return cores == null ? 0 : cores[i];
+  }
+
+  // -1 for a segment without quantums
+  public int getStartQ(int i) {
+    index();
+    return startQs == null ? -1 : startQs[i];
+  }
+
+  public int getEndQ(int i) {
+    index();
+    return endQs == null ? -1 : endQs[i];
+  }
+
+  public String getName(int pid) {
+    return pid >= 0 && pid < names.length ? names[pid] : null;
+  }
+
+  // Segments that ran at some time in [from, to), in start time order
+  public int[] segmentsBetween(int from, int to) {
+    index();
+    int end = firstStartingAtOrAfter(to);
+    // The first block reaching past from, nothing before it does
+    int low = 0;
+    int high = blockMaxEndTimes.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (blockMaxEndTimes[middle] > from) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    int[] segments = new int[16];
+    int count = 0;
+    for (int i = low * BLOCK; i < end; ++i) {
+      if (endTimes[i] > from) {
+        if (count == segments.length) {
+          segments = Arrays.copyOf(segments, count * 2);
+        }
+        segments[count++] = i;
+      }
+    }
+    return Arrays.copyOf(segments, count);
+  }
+
+  // Segments of the process, in start time order
+  public int[] segmentsOf(int pid) {
+    index();
+    if (pid < 0 || pid + 1 >= pidOffsets.length) { return new int[0]; }
+    return Arrays.copyOfRange(pidSegments, pidOffsets[pid], pidOffsets[pid + 1]);
+  }
+
+  private int firstStartingAtOrAfter(int time) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (startTimes[middle] < time) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private void index() {
+    if (isIndexed) { return; }
+    // Sorting or trimming, the columns lose the room they had to grow
+    if (!isSorted) {
+      sort();
+    } else if (pids.length != size) {
+      pids = Arrays.copyOf(pids, size);
+      startTimes = Arrays.copyOf(startTimes, size);
+      endTimes = Arrays.copyOf(endTimes, size);
+      if (cores != null) {
+        cores = Arrays.copyOf(cores, size);
+      }
+      if (startQs != null) {
+        startQs = Arrays.copyOf(startQs, size);
+        endQs = Arrays.copyOf(endQs, size);
+      }
+    }
+    blockMaxEndTimes = new int[(size + BLOCK - 1) / BLOCK];
+    int maxEndTime = Integer.MIN_VALUE;
+    int pidLimit = 0;
+    for (int i = 0; i < size; ++i) {
+      maxEndTime = Math.max(maxEndTime, endTimes[i]);
+      if (i % BLOCK == BLOCK - 1 || i == size - 1) {
+        blockMaxEndTimes[i / BLOCK] = maxEndTime;
+      }
+      pidLimit = Math.max(pidLimit, pids[i] + 1);
+    }
+    // Counting sort of the segments on pid, stable so every posting list stays in start time order
+    pidOffsets = new int[pidLimit + 1];
+    for (int i = 0; i < size; ++i) {
+      if (pids[i] != OVERHEAD_PID) {
+        pidOffsets[pids[i] + 1] += 1;
+      }
+    }
+    for (int pid = 0; pid < pidLimit; ++pid) {
+      pidOffsets[pid + 1] += pidOffsets[pid];
+    }
+    pidSegments = new int[pidOffsets[pidLimit]];
+    int[] next = Arrays.copyOf(pidOffsets, pidLimit);
+    for (int i = 0; i < size; ++i) {
+      if (pids[i] != OVERHEAD_PID) {
+        pidSegments[next[pids[i]]++] = i;
+      }
+    }
+    isIndexed = true;
+  }
+
+  // Segments mostly come in end time order, which is start time order on a single core. Ties keep the
+  // order they came in
+  private void sort() {
+    long[] order = new long[size];
+    for (int i = 0; i < size; ++i) {
+      order[i] = ((long) startTimes[i] << 32) | i;
+    }
+    Arrays.sort(order);
+    pids = permute(pids, order);
+    startTimes = permute(startTimes, order);
+    endTimes = permute(endTimes, order);
+    if (cores != null) {
+      cores = permute(cores, order);
+    }
+    if (startQs != null) {
+      startQs = permute(startQs, order);
+      endQs = permute(endQs, order);
+    }
+    isSorted = true;
+  }
+
+  private int[] permute(int[] column, long[] order) {
+    int[] permuted = new int[order.length];
+    for (int i = 0; i < order.length; ++i) {
+      permuted[i] = column[(int) order[i]];
+    }
+    return permuted;
+  }
+
+}
+
+// Writes every cluster as a segment (pid, start, end, startQ, endQ, core) through a buffered FileChannel,
+// instead of the padded text of Cluster.toString. The binary format is the magic number and version followed
+// by six big-endian ints per segment, the delimited one is a line of comma separated values per segment.
+// A context switch is an overhead segment of pid -1
+class SegmentWriter implements ClusterListener, AutoCloseable {
+  static final int MAGIC = 0x43505553; // "CPUS"
+  static final int VERSION = 3; // Version 1 had no core, version 2 no overhead segments
+  static final int OVERHEAD_PID = -1;
+  private static final int MAX_RECORD = 6 * 12; // Longest delimited line, six signed ints with separators
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private final boolean isBinary;
+
+  private SegmentWriter(Path path, boolean isBinary) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    this.buffer = ByteBuffer.allocateDirect(1 << 16);
+    this.isBinary = isBinary;
+    if (isBinary) {
+      buffer.putInt(MAGIC).putInt(VERSION);
+    } else {
+      buffer.put("pid,start,end,startQ,endQ,core\n".getBytes(StandardCharsets.US_ASCII));
+    }
+  }
+
+  public static SegmentWriter binary(Path path) throws IOException {
+    return new SegmentWriter(path, true);
+  }
+
+  public static SegmentWriter delimited(Path path) throws IOException {
+    return new SegmentWriter(path, false);
+  }
+
+  @Override
+  public void onCluster(Cluster cluster) {
+    write(cluster.getPid(), cluster.getStartTime(), cluster.getEndTime(), cluster.getStartQ(), cluster.getEndQ(),
+        cluster.getCore());
+  }
+
+  @Override
+  public void onContextSwitch(int core, int startTime, int endTime) {
+    write(OVERHEAD_PID, startTime, endTime, -1, -1, core);
+  }
+
+  private void write(int pid, int startTime, int endTime, int startQ, int endQ, int core) {
+    try {
+      if (buffer.remaining() < MAX_RECORD) {
+        flush();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (isBinary) {
+      buffer.putInt(pid).putInt(startTime).putInt(endTime).putInt(startQ).putInt(endQ).putInt(core);
+      return;
+    }
+    TraceWriter.putDecimal(buffer, pid);
+    buffer.put((byte) ',');
+    TraceWriter.putDecimal(buffer, startTime);
+    buffer.put((byte) ',');
+    TraceWriter.putDecimal(buffer, endTime);
+    buffer.put((byte) ',');
+    TraceWriter.putDecimal(buffer, startQ);
+    buffer.put((byte) ',');
+    TraceWriter.putDecimal(buffer, endQ);
+    buffer.put((byte) ',');
+    TraceWriter.putDecimal(buffer, core);
+    buffer.put((byte) '\n');
+  }
+
+  private void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    flush();
+    channel.close();
+  }
+
+}
+
+// Gantt chart drawn in a fixed number of columns whatever the schedule length, one lane per core. Each column
+// covers the same time span, which doubles (merging columns pairwise) whenever a cluster ends past the last
+// column, so memory stays proportional to the width and clusters can be fed while the schedule is running
+class AsciiChart implements ClusterListener {
+  private static final String OVERHEAD = new String("~"); // Label of context switches, told apart by identity
+  private final int width;
+  private String[][] labels; // Core -> column -> name of the process that ran longest in it
+  private long[][] labelTimes; // Core -> column -> time that process ran in it
+  private long[][] busyTimes;
+  private long unit = 1; // Time covered by a column
+  private long endTime;
+
+  public AsciiChart(int width) {
+    if (width < 2) {
+      throw new IllegalArgumentException("Chart width must be at least 2");
+    }
+    this.width = width;
+    this.labels = new String[0][];
+    this.labelTimes = new long[0][];
+    this.busyTimes = new long[0][];
+    addLanes(1);
+  }
+
+  // Fits the terminal, COLUMNS is set by most shells
+  public static AsciiChart forTerminal() {
+    String columns = System.getenv("COLUMNS");
+    try {
+      return new AsciiChart(columns == null ? 80 : Math.max(2, Integer.parseInt(columns.trim())));
+    } catch (NumberFormatException e) {
+      return new AsciiChart(80);
+    }
+  }
+
+  private void addLanes(int laneCount) {
+    int oldCount = labels.length;
+    labels = Arrays.copyOf(labels, laneCount);
+    labelTimes = Arrays.copyOf(labelTimes, laneCount);
+    busyTimes = Arrays.copyOf(busyTimes, laneCount);
+    for (int lane = oldCount; lane < laneCount; ++lane) {
+      labels[lane] = new String[width];
+      labelTimes[lane] = new long[width];
+      busyTimes[lane] = new long[width];
+    }
+  }
+
+  @Override
+  public void onCluster(Cluster cluster) {
+    add(cluster.getCore(), cluster.getStartTime(), cluster.getEndTime(), cluster.getProcess().getName());
+  }
+
+  @Override
+  public void onContextSwitch(int core, int startTime, int endTime) {
+    add(core, startTime, endTime, OVERHEAD);
+  }
+
+  private void add(int lane, long startTime, long end, String name) {
+    long start = Math.max(0, startTime);
+    if (end <= start) { return; }
+    while (end > width * unit) {
+      halve();
+    }
+    endTime = Math.max(endTime, end);
+    if (lane >= labels.length) {
+      addLanes(lane + 1);
+    }
+    for (int column = (int) (start / unit); column * unit < end; ++column) {
+      long overlap = Math.min(end, (column + 1) * unit) - Math.max(start, column * unit);
+      busyTimes[lane][column] += overlap;
+      if (Objects.equals(labels[lane][column], name)) {
+        labelTimes[lane][column] += overlap;
+      } else if (overlap > labelTimes[lane][column]) {
+        labels[lane][column] = name;
+        labelTimes[lane][column] = overlap;
+      }
+    }
+  }
+
+  private void halve() {
+    for (int lane = 0; lane < labels.length; ++lane) {
+      halve(labels[lane], labelTimes[lane], busyTimes[lane]);
+    }
+    unit *= 2;
+  }
+
+  private void halve(String[] labels, long[] labelTimes, long[] busyTimes) {
+    for (int column = 0; column < width; ++column) {
+      int left = 2 * column;
+      int right = left + 1;
+      String label = null;
+      long labelTime = 0;
+      long busyTime = 0;
+      if (left < width) {
+        label = labels[left];
+        labelTime = labelTimes[left];
+        busyTime = busyTimes[left];
+      }
+      if (right < width) {
+        busyTime += busyTimes[right];
+        if (label != null && label.equals(labels[right])) {
+          labelTime += labelTimes[right];
+        } else if (labelTimes[right] > labelTime) {
+          label = labels[right];
+          labelTime = labelTimes[right];
+        }
+      }
+      labels[column] = label;
+      labelTimes[column] = labelTime;
+      busyTimes[column] = busyTime;
+    }
+  }
+
+  // A line per lane, titled with its core when there are several, then the time axis
+  public String render() {
+    int columns = (int) Math.min(width, (endTime + unit - 1) / unit);
+    StringBuilder chart = new StringBuilder((labels.length + 1) * (width + 16) + 64);
+    for (int lane = 0; lane < labels.length; ++lane) {
+      if (labels.length > 1) {
+        chart.append("Core ").append(lane).append(':').append(System.lineSeparator());
+      }
+      renderLane(chart, labels[lane], busyTimes[lane], columns);
+      chart.append(System.lineSeparator());
+    }
+    String end = Long.toString(endTime);
+    chart.append('0').append(" ".repeat(Math.max(1, columns - 1 - end.length()))).append(end);
+    chart.append(System.lineSeparator());
+    chart.append("1 column = ").append(unit).append(" time units").append(System.lineSeparator());
+    return chart.toString();
+  }
+
+  // Runs of columns, '|' and the process name when it fits, '#' when it doesn't, '~' for context switches
+  // and '.' for idle columns
+  private static void renderLane(StringBuilder chart, String[] labels, long[] busyTimes, int columns) {
+    int column = 0;
+    while (column < columns) {
+      String label = busyTimes[column] == 0 ? null : labels[column];
+      int runEnd = column + 1;
+      while (runEnd < columns && Objects.equals(busyTimes[runEnd] == 0 ? null : labels[runEnd], label)) {
+        runEnd += 1;
+      }
+      int length = runEnd - column;
+      if (label == null) {
+        chart.append(".".repeat(length));
+      } else if (label == OVERHEAD) {
+        chart.append("~".repeat(length));
+      } else if (label.length() <= length - 1) {
+        chart.append('|').append(label).append("=".repeat(length - 1 - label.length()));
+      } else {
+        chart.append("#".repeat(length));
+      }
+      column = runEnd;
+    }
+  }
+
+}
+
+// Read-only snapshot of the input processes, shared by every run instead of copied per scheduler
+final class Workload {
+  private final List<Process> processes;
+  private final TreeMap<Integer, ArrayList<Process>> arrivalTimeProcesses; // ArrivalTime -> Processes
+
+  private Workload(List<Process> processes) {
+    this.processes = processes;
+    this.arrivalTimeProcesses = new TreeMap<>();
+    for (Process process : processes) {
+      arrivalTimeProcesses.computeIfAbsent(process.getArrivalTime(), k -> new ArrayList<>()).add(process);
+    }
+  }
+
+  // Copies the processes so later changes to the caller's objects can't leak into running simulations
+  public static Workload of(List<Process> processes) {
+    ArrayList<Process> snapshot = new ArrayList<>(processes.size());
+    for (Process process : processes) {
+      snapshot.add(new Process(process));
+    }
+    return new Workload(Collections.unmodifiableList(snapshot));
+  }
+
+  public List<Process> getProcesses() {
+    return processes;
+  }
+
+  // Shared between threads, must never be modified
+  TreeMap<Integer, ArrayList<Process>> getArrivalTimeProcesses() {
+    return arrivalTimeProcesses;
+  }
+
+  public int size() {
+    return processes.size();
+  }
+
+}
+
+// Reads process traces through memory-mapped files straight into Process records, without Scanner.
+// A trace is either CSV lines "name,arrival,burst,priority" (an optional header line and lines starting
+// with '#' are skipped) or the binary format of TraceWriter, recognised by its magic number
+class TraceLoader {
+  static final int MAGIC = 0x43505554; // "CPUT"
+  static final int VERSION = 1;
+  private static final long WINDOW = 1L << 28; // Bytes mapped at once, bigger traces are mapped window by window
+  private static final int MAX_RECORD = 2 + 0xFFFF + 12;
+
+  public static ArrayList<Process> load(Path path) throws IOException {
+    ArrayList<Process> processes = new ArrayList<>();
+    forEach(path, processes::add);
+    return processes;
+  }
+
+  // Hands the processes over in file order without keeping them
+  public static void forEach(Path path, Consumer<Process> consumer) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size >= 8) {
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 8);
+        if (header.getInt(0) == MAGIC) {
+          if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported trace version " + header.getInt(4) + " in " + path);
+          }
+          readBinary(channel, size, consumer);
+          return;
+        }
+      }
+      readCsv(channel, size, consumer);
+    }
+  }
+
+  // Same for a trace that is already in memory, such as a request body
+  public static void forEach(ByteBuffer trace, Consumer<Process> consumer) throws IOException {
+    int size = trace.limit();
+    if (size >= 8 && trace.getInt(0) == MAGIC) {
+      if (trace.getInt(4) != VERSION) {
+        throw new IOException("Unsupported trace version " + trace.getInt(4));
+      }
+      readBinaryRecords(trace, 8, size, true, 0, consumer);
+      return;
+    }
+    readCsvLines(trace, size, true, 0, consumer);
+  }
+
+  private static void readBinary(FileChannel channel, long size, Consumer<Process> consumer) throws IOException {
+    long offset = 8;
+    while (offset < size) {
+      long length = Math.min(WINDOW, size - offset);
+      boolean isLastWindow = offset + length == size;
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+      offset += readBinaryRecords(buffer, 0, (int) length, isLastWindow, offset, consumer);
+    }
+  }
+
+  // Reads the records of buffer from position to limit, offset is where buffer starts in the trace.
+  // Returns the position reached: the first record that may run past the window if it is not the last one
+  private static int readBinaryRecords(ByteBuffer buffer, int position, int limit, boolean isLastWindow, long offset,
+                                       Consumer<Process> consumer) throws IOException {
+    byte[] name = new byte[64];
+    while (position < limit && (isLastWindow || limit - position >= MAX_RECORD)) {
+      if (limit - position < 2) { throw new IOException("Truncated trace record at " + (offset + position)); }
+      int nameLength = buffer.getShort(position) & 0xFFFF;
+      if (limit - position < 2 + nameLength + 12) {
+        throw new IOException("Truncated trace record at " + (offset + position));
+      }
+      if (nameLength > name.length) {
+        name = new byte[nameLength];
+      }
+      buffer.get(position + 2, name, 0, nameLength);
+      position += 2 + nameLength;
+      consumer.accept(new Process(new String(name, 0, nameLength, StandardCharsets.UTF_8),
+          buffer.getInt(position), buffer.getInt(position + 4), buffer.getInt(position + 8)));
+      position += 12;
+    }
+    return position;
+  }
+
+  private static void readCsv(FileChannel channel, long size, Consumer<Process> consumer) throws IOException {
+    long offset = 0;
+    while (offset < size) {
+      long length = Math.min(WINDOW, size - offset);
+      boolean isLastWindow = offset + length == size;
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+      int lineStart = readCsvLines(buffer, (int) length, isLastWindow, offset, consumer);
+      if (lineStart == 0) {
+        throw new IOException("Trace line longer than " + WINDOW + " bytes at " + offset);
+      }
+      offset += Math.min(lineStart, length);
+    }
+  }
+
+  // Reads the lines of buffer up to limit, offset is where buffer starts in the trace. Returns the start of
+  // the first line the window cut, it is read again from the next window
+  private static int readCsvLines(ByteBuffer buffer, int limit, boolean isLastWindow, long offset,
+                                  Consumer<Process> consumer) throws IOException {
+    int lineStart = 0;
+    while (lineStart < limit) {
+      int lineEnd = lineStart;
+      while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+        lineEnd += 1;
+      }
+      if (lineEnd == limit && !isLastWindow) { break; }
+      parseCsvLine(buffer, lineStart, lineEnd, offset + lineStart == 0, offset + lineStart, consumer);
+      lineStart = lineEnd + 1;
+    }
+    return lineStart;
+  }
+
+  private static void parseCsvLine(ByteBuffer buffer, int start, int end, boolean isFirstLine, long at,
+                                   Consumer<Process> consumer) throws IOException {
+    while (end > start && isBlank(buffer.get(end - 1))) {
+      end -= 1;
+    }
+    while (start < end && isBlank(buffer.get(start))) {
+      start += 1;
+    }
+    if (start == end || buffer.get(start) == '#') { return; }
+    int[] fields = new int[4]; // Start of each field, they end at the next comma
+    int count = 0;
+    fields[count++] = start;
+    for (int i = start; i < end && count <= 4; ++i) {
+      if (buffer.get(i) == ',') {
+        if (count == 4) { throw new IOException("Too many fields in trace line at " + at); }
+        fields[count++] = i + 1;
+      }
+    }
+    if (count != 4) { throw new IOException("Expected name,arrival,burst,priority in trace line at " + at); }
+    int nameEnd = fields[1] - 1;
+    while (nameEnd > fields[0] && isBlank(buffer.get(nameEnd - 1))) {
+      nameEnd -= 1;
+    }
+    byte[] name = new byte[nameEnd - fields[0]];
+    buffer.get(fields[0], name);
+    int arrivalTime;
+    try {
+      arrivalTime = parseInt(buffer, fields[1], fields[2] - 1, at);
+    } catch (IOException e) {
+      if (isFirstLine) { return; } // Header line
+      throw e;
+    }
+    int burstTime = parseInt(buffer, fields[2], fields[3] - 1, at);
+    int priority = parseInt(buffer, fields[3], end, at);
+    consumer.accept(new Process(new String(name, StandardCharsets.UTF_8), arrivalTime, burstTime, priority));
+  }
+
+  private static int parseInt(ByteBuffer buffer, int start, int end, long at) throws IOException {
+    while (start < end && isBlank(buffer.get(start))) {
+      start += 1;
+    }
+    while (end > start && isBlank(buffer.get(end - 1))) {
+      end -= 1;
+    }
+    boolean isNegative = start < end && buffer.get(start) == '-';
+    int i = isNegative ? start + 1 : start;
+    if (i == end) { throw new IOException("Missing number in trace line at " + at); }
+    long value = 0;
+    for (; i < end; ++i) {
+      int digit = buffer.get(i) - '0';
+      if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE) {
+        throw new IOException("Bad number in trace line at " + at);
+      }
+      value = value * 10 + digit;
+    }
+    value = isNegative ? -value : value;
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw new IOException("Number out of range in trace line at " + at);
+    }
+    return (int) value;
+  }
+
+  private static boolean isBlank(byte b) {
+    return b == ' ' || b == '\t' || b == '\r';
+  }
+
+}
+
+// Writes processes one by one to a trace (see TraceLoader) through a buffered FileChannel, in the
+// binary format or as CSV lines
+class TraceWriter implements Consumer<Process>, AutoCloseable {
+  private static final int MAX_RECORD = 2 + 0xFFFF + 36; // Longest name, three numbers and separators
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private final boolean isBinary;
+
+  private TraceWriter(Path path, boolean isBinary) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    this.buffer = ByteBuffer.allocateDirect(2 * MAX_RECORD); // Any record fits once it is flushed
+    this.isBinary = isBinary;
+    if (isBinary) {
+      buffer.putInt(TraceLoader.MAGIC).putInt(TraceLoader.VERSION);
+    } else {
+      buffer.put("name,arrival,burst,priority\n".getBytes(StandardCharsets.US_ASCII));
+    }
+  }
+
+  public static TraceWriter binary(Path path) throws IOException {
+    return new TraceWriter(path, true);
+  }
+
+  // Names must not hold commas or line breaks, the loader doesn't unquote
+  public static TraceWriter delimited(Path path) throws IOException {
+    return new TraceWriter(path, false);
+  }
+
+  @Override
+  public void accept(Process process) {
+    byte[] name = process.getName().getBytes(StandardCharsets.UTF_8);
+    if (name.length > 0xFFFF) {
+      throw new IllegalArgumentException("Process name longer than 65535 bytes");
+    }
+    try {
+      if (buffer.remaining() < MAX_RECORD - 0xFFFF + name.length) {
+        flush();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (isBinary) {
+      buffer.putShort((short) name.length).put(name);
+      buffer.putInt(process.getArrivalTime()).putInt(process.getBurstTime()).putInt(process.getPriority());
+      return;
+    }
+    for (byte b : name) {
+      if (b == ',' || b == '\n' || b == '\r') {
+        throw new IllegalArgumentException("Process name " + process.getName() + " can't go in a CSV trace");
+      }
+    }
+    buffer.put(name).put((byte) ',');
+    putDecimal(buffer, process.getArrivalTime());
+    buffer.put((byte) ',');
+    putDecimal(buffer, process.getBurstTime());
+    buffer.put((byte) ',');
+    putDecimal(buffer, process.getPriority());
+    buffer.put((byte) '\n');
+  }
+
+  // Digits written straight to the buffer, without a String per number
+  static void putDecimal(ByteBuffer buffer, int value) {
+    long rest = value;
+    if (rest < 0) {
+      buffer.put((byte) '-');
+      rest = -rest;
+    }
+    long divisor = 1;
+    while (divisor * 10 <= rest) {
+      divisor *= 10;
+    }
+    for (; divisor > 0; divisor /= 10) {
+      buffer.put((byte) ('0' + rest / divisor % 10));
+    }
+  }
+
+  private void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    flush();
+    channel.close();
+  }
+
+}
+
+// A random quantity, sampled from the generator it is given so one seed reproduces a whole workload
+interface Distribution {
+  double sample(SplittableRandom random);
+
+  double mean();
+
+  static Distribution constant(double value) {
+    return of(random -> value, value);
+  }
+
+  // Continuous on [min, max)
+  static Distribution uniform(double min, double max) {
+    return of(random -> min + random.nextDouble() * (max - min), (min + max) / 2);
+  }
+
+  static Distribution exponential(double mean) {
+    return of(random -> -Math.log(1 - random.nextDouble()) * mean, mean);
+  }
+
+  // Heavy tail: most samples are close to min, a few are huge. The mean is infinite for alpha <= 1
+  static Distribution pareto(double alpha, double min) {
+    return of(random -> min / Math.pow(1 - random.nextDouble(), 1 / alpha),
+        alpha > 1 ? alpha * min / (alpha - 1) : Double.POSITIVE_INFINITY);
+  }
+
+  // exp of a normal with the given mean and standard deviation
+  static Distribution lognormal(double mu, double sigma) {
+    return of(random -> {
+      // Box-Muller
+      double normal = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+      return Math.exp(mu + sigma * normal);
+    }, Math.exp(mu + sigma * sigma / 2));
+  }
+
+  // Value i + 1 with probability weights[i] / sum of weights
+  static Distribution discrete(double... weights) {
+    double[] cumulative = new double[weights.length];
+    double total = 0;
+    double mean = 0;
+    for (int i = 0; i < weights.length; ++i) {
+      total += weights[i];
+      cumulative[i] = total;
+      mean += (i + 1) * weights[i];
+    }
+    double sum = total;
+    return of(random -> {
+      double x = random.nextDouble() * sum;
+      int i = 0;
+      while (i < cumulative.length - 1 && cumulative[i] <= x) {
+        i += 1;
+      }
+      return i + 1;
+    }, mean / total);
+  }
+
+  // first with probability p, second otherwise
+  static Distribution mixture(double p, Distribution first, Distribution second) {
+    return of(random -> random.nextDouble() < p ? first.sample(random) : second.sample(random),
+        p * first.mean() + (1 - p) * second.mean());
+  }
+
+  // Samples above max are cut to max, mean() stays the one of the uncut distribution
+  default Distribution truncatedAt(double max) {
+    Distribution distribution = this;
+    return of(random -> Math.min(max, distribution.sample(random)), distribution.mean());
+  }
+
+  private static Distribution of(ToDoubleFunction<SplittableRandom> sampler, double mean) {
+    return new Distribution() {
+      @Override
+      public double sample(SplittableRandom random) {
+        return sampler.applyAsDouble(random);
+      }
+
+      @Override
+      public double mean() {
+        return mean;
+      }
+    };
+  }
+
+  // name:parameters, e.g. exponential:10, pareto:1.5:1, lognormal:2:0.5, uniform:0:10, constant:4, discrete:1:2:1
+  static Distribution parse(String text) {
+    String[] parts = text.split(":");
+    double[] parameters = new double[parts.length - 1];
+    for (int i = 1; i < parts.length; ++i) {
+      parameters[i - 1] = Double.parseDouble(parts[i]);
+    }
+    switch (parts[0] + "/" + parameters.length) {
+      case "constant/1": return constant(parameters[0]);
+      case "uniform/2": return uniform(parameters[0], parameters[1]);
+      case "exponential/1": return exponential(parameters[0]);
+      case "pareto/2": return pareto(parameters[0], parameters[1]);
+      case "lognormal/2": return lognormal(parameters[0], parameters[1]);
+      default:
+        if (parts[0].equals("discrete") && parameters.length > 0) { return discrete(parameters); }
+        throw new IllegalArgumentException("Bad distribution " + text);
+    }
+  }
+}
+
+// Time between two consecutive arrivals, 0 when they arrive together
+interface ArrivalPattern {
+  double nextGap(SplittableRandom random);
+
+  // Independent arrivals, rate processes per time unit on average
+  static ArrivalPattern poisson(double rate) {
+    Distribution gaps = Distribution.exponential(1 / rate);
+    return gaps::sample;
+  }
+
+  // Same average rate, but processes come in clumps of 1 + burstiness on average, with longer quiet gaps
+  static ArrivalPattern bursty(double rate, double burstiness) {
+    Distribution gaps = Distribution.exponential((1 + burstiness) / rate);
+    return random -> random.nextDouble() * (1 + burstiness) < 1 ? gaps.sample(random) : 0;
+  }
+
+  // poisson:RATE or bursty:RATE:BURSTINESS
+  static ArrivalPattern parse(String text) {
+    String[] parts = text.split(":");
+    if (parts[0].equals("poisson") && parts.length == 2) {
+      return poisson(Double.parseDouble(parts[1]));
+    }
+    if (parts[0].equals("bursty") && parts.length == 3) {
+      return bursty(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+    }
+    throw new IllegalArgumentException("Bad arrival pattern " + text);
+  }
+}
+
+// Synthetic workload produced lazily in arrival order: each iteration regenerates the same processes from
+// the seed, so a hundred million processes can be fed to the schedulers or to a trace file without ever
+// being held in memory. Burst times and priorities are sampled values rounded up, at least 1
+class WorkloadGenerator implements Iterable<Process> {
+  private final long count;
+  private final ArrivalPattern arrivals;
+  private final Distribution bursts;
+  private final Distribution priorities;
+  private final long seed;
+
+  public WorkloadGenerator(long count, ArrivalPattern arrivals, Distribution bursts, Distribution priorities,
+                           long seed) {
+    this.count = count;
+    this.arrivals = arrivals;
+    this.bursts = bursts;
+    this.priorities = priorities;
+    this.seed = seed;
+  }
+
+  // Arrivals that keep one cpu busy the given fraction of the time on average
+  public static ArrivalPattern poissonAtLoad(Distribution bursts, double load) {
+    return ArrivalPattern.poisson(load / bursts.mean());
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  @Override
+  public Iterator<Process> iterator() {
+    return new Iterator<>() {
+      private final SplittableRandom random = new SplittableRandom(seed);
+      private long generated;
+      private double time;
+
+      @Override
+      public boolean hasNext() {
+        return generated < count;
+      }
+
+      @Override
+      public Process next() {
+        if (generated == count) {
+          throw new NoSuchElementException();
+        }
+        if (generated > 0) {
+          time += arrivals.nextGap(random);
+        }
+        if (time > Integer.MAX_VALUE) {
+          throw new IllegalStateException("Arrival times past " + Integer.MAX_VALUE + ", lower the count or raise the rate");
+        }
+        Process process = new Process("P" + generated, (int) time, toInt(bursts.sample(random)),
+            toInt(priorities.sample(random)));
+        generated += 1;
+        return process;
+      }
+    };
+  }
+
+  private static int toInt(double value) {
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.ceil(value)));
+  }
+
+  public ArrayList<Process> toList() {
+    if (count > Integer.MAX_VALUE - 8) {
+      throw new IllegalStateException(count + " processes don't fit a list, stream them");
+    }
+    ArrayList<Process> processes = new ArrayList<>((int) count);
+    forEach(processes::add);
+    return processes;
+  }
+
+}
+
+class SchedulerResult {
+  private final String name;
+  private final Chart chart;
+  private final int clusterCount;
+  private final long elapsedNanos;
+
+  public SchedulerResult(String name, Chart chart, int clusterCount, long elapsedNanos) {
+    this.name = name;
+    this.chart = chart;
+    this.clusterCount = clusterCount;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Chart getChart() {
+    return chart;
+  }
+
+  public int getClusterCount() {
+    return clusterCount;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+}
+
+class ComparisonReport {
+  private final ArrayList<SchedulerResult> results;
+
+  public ComparisonReport(ArrayList<SchedulerResult> results) {
+    this.results = results;
+  }
+
+  public ArrayList<SchedulerResult> getResults() {
+    return results;
+  }
+
+  public void print() {
+    System.out.printf("%-22s %14s %16s %14s %10s %10s%n", "Scheduler", "Avg waiting", "Avg turnaround",
+        "Avg response", "Clusters", "Time (ms)");
+    for (SchedulerResult result : results) {
+      Chart chart = result.getChart();
+      System.out.printf("%-22s %14.3f %16.3f %14.3f %10d %10.1f%n", result.getName(), chart.getAvgWaitingTime(),
+          chart.getAvgTurnAroundTime(), chart.getAvgResponseTime(), result.getClusterCount(),
+          result.getElapsedNanos() / 1e6);
+    }
+    ArrayList<String> names = new ArrayList<>();
+    ArrayList<LatencySummary> summaries = new ArrayList<>();
+    for (SchedulerResult result : results) {
+      names.add(result.getName());
+      summaries.add(result.getChart().getMetrics().getSummary());
+    }
+    LatencySummary.print(names, summaries);
+    System.out.println("====================================");
+  }
+
+}
+
+// Runs one single-core scheduler over a workload in parallel. Once the cpu is idle and nothing arrived yet,
+// nothing before the gap matters after it: every queue is empty and the aging, quantums, AG factors and
+// policy draws belong to the finished processes. The workload is cut into chunks at arrivals the work before
+// them cannot reach, counting bursts and one context switch per process, and the chunks run as separate runs
+// that keep the submission numbers of the whole workload. Context switches may push work past a cut, so a chunk only counts if the one before it
+// ended before its first arrival: a process finishing right as the next arrives is not the same as an idle
+// cpu for Round Robin. Otherwise the two run again as one. The charts are the ones of a sequential run
+class ParallelSimulation {
+  private static final int CHUNKS_PER_THREAD = 4;
+  private final ForkJoinPool pool;
+
+  private static final class Chunk {
+    final int from; // First process
+    final int to; // Past the last one
+    final ArrayList<Cluster> clusters = new ArrayList<>();
+    final ArrayList<int[]> contextSwitches = new ArrayList<>();
+    int endTime; // The cpu is idle from here on
+
+    Chunk(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+  }
+
+  public ParallelSimulation() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public ParallelSimulation(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  public Chart run(Scheduler scheduler, Workload workload) {
+    // The cores of a multi-core run are never idle all at once in a way that can be told from the workload
+    if (scheduler instanceof MultiCoreScheduler) {
+      return Chart.of(scheduler, workload);
+    }
+    // Processes arriving before time 0 are never admitted
+    ArrayList<Process> processes = new ArrayList<>(workload.size());
+    for (ArrayList<Process> li : workload.getArrivalTimeProcesses().tailMap(0, true).values()) {
+      processes.addAll(li);
+    }
+    ArrayList<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+    int chunkCount = pool.getParallelism() * CHUNKS_PER_THREAD;
+    for (int[] range : split(processes, chunkCount, scheduler.getContextSwitchingTime())) {
+      tasks.add(pool.submit(() -> simulate(scheduler, processes, range[0], range[1])));
+    }
+    ArrayList<Cluster> clusters = new ArrayList<>();
+    ArrayList<int[]> contextSwitches = new ArrayList<>();
+    Chunk chunk = null;
+    for (ForkJoinTask<Chunk> task : tasks) {
+      Chunk next = task.join();
+      if (chunk == null) {
+        chunk = next;
+      } else if (chunk.endTime < processes.get(next.from).getArrivalTime()) {
+        clusters.addAll(chunk.clusters);
+        contextSwitches.addAll(chunk.contextSwitches);
+        chunk = next;
+      } else {
+        chunk = simulate(scheduler, processes, chunk.from, next.to);
+      }
+    }
+    if (chunk != null) {
+      clusters.addAll(chunk.clusters);
+      contextSwitches.addAll(chunk.contextSwitches);
+    }
+    return new Chart(clusters, contextSwitches);
+  }
+
+  // Ranges of about the same number of processes, cut where the cpu should be idle before an arrival
+  private static ArrayList<int[]> split(ArrayList<Process> processes, int chunkCount, int contextSwitchingTime) {
+    ArrayList<int[]> ranges = new ArrayList<>();
+    int chunkSize = Math.max(1, processes.size() / chunkCount);
+    int from = 0;
+    long workEnd = Long.MIN_VALUE; // When the work arrived so far is done, one context switch per process
+    for (int i = 0; i < processes.size(); ++i) {
+      Process process = processes.get(i);
+      if (process.getArrivalTime() > workEnd && i - from >= chunkSize) {
+        ranges.add(new int[] {from, i});
+        from = i;
+      }
+      // A process holds the cpu for at least one time unit, the first time it gets it costs a switch
+      workEnd = Math.max(workEnd, process.getArrivalTime()) + Math.max(1, process.getBurstTime())
+          + contextSwitchingTime;
+    }
+    if (from < processes.size()) {
+      ranges.add(new int[] {from, processes.size()});
+    }
+    return ranges;
+  }
+
+  private static Chunk simulate(Scheduler scheduler, ArrayList<Process> processes, int from, int to) {
+    Chunk chunk = new Chunk(from, to);
+    SchedulerRun run = scheduler.start(Chart.recorder(chunk.clusters, chunk.contextSwitches));
+    for (int i = from; i < to; ++i) {
+      Process process = processes.get(i);
+      run.submit(process, i, process.getArrivalTime(), process.getBurstTime(), process.getPriority());
+    }
+    run.finish();
+    // A single cpu reports in time order
+    if (!chunk.clusters.isEmpty()) {
+      chunk.endTime = chunk.clusters.get(chunk.clusters.size() - 1).getEndTime();
+    }
+    if (!chunk.contextSwitches.isEmpty()) {
+      chunk.endTime = Math.max(chunk.endTime, chunk.contextSwitches.get(chunk.contextSwitches.size() - 1)[2]);
+    }
+    return chunk;
+  }
+
+}
+
+// Runs every scheduler at the same time, each on its own worker against one shared workload snapshot
+class ComparisonRunner {
+  private final ForkJoinPool pool;
+  private final ParallelSimulation parallelSimulation; // Null to run every scheduler in one piece
+
+  public ComparisonRunner() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public ComparisonRunner(ForkJoinPool pool) {
+    this(pool, false);
+  }
+
+  // isSplitAtIdleGaps also runs each scheduler in parallel, see ParallelSimulation
+  public ComparisonRunner(ForkJoinPool pool, boolean isSplitAtIdleGaps) {
+    this.pool = pool;
+    this.parallelSimulation = isSplitAtIdleGaps ? new ParallelSimulation(pool) : null;
+  }
+
+  // Every schedule gets a fresh SchedulerRun, so one scheduler may be passed any number of times
+  public ComparisonReport run(List<Scheduler> schedulers, Workload workload) {
+    ArrayList<ForkJoinTask<SchedulerResult>> tasks = new ArrayList<>();
+    for (Scheduler scheduler : schedulers) {
+      tasks.add(pool.submit(() -> runOne(scheduler, workload)));
+    }
+    ArrayList<SchedulerResult> results = new ArrayList<>();
+    for (ForkJoinTask<SchedulerResult> task : tasks) {
+      results.add(task.join());
+    }
+    return new ComparisonReport(results);
+  }
+
+  private SchedulerResult runOne(Scheduler scheduler, Workload workload) {
+    long start = System.nanoTime();
+    Chart chart = parallelSimulation == null ? Chart.of(scheduler, workload)
+        : parallelSimulation.run(scheduler, workload);
+    return new SchedulerResult(scheduler.getName(), chart, chart.getClusterCount(), System.nanoTime() - start);
+  }
+
+}
+
+// Runs a workload once and keeps a checkpoint of the run every checkpointInterval time units. A changed
+// workload is then simulated again only from the last checkpoint before its first changed arrival, the
+// clusters and context switches that ended before that checkpoint are reused
+class WhatIfSimulation {
+  private static final class Mark {
+    final Checkpoint checkpoint;
+    final int clusterCount; // Clusters that had ended when the checkpoint was taken
+    final int contextSwitchCount;
+
+    Mark(Checkpoint checkpoint, int clusterCount, int contextSwitchCount) {
+      this.checkpoint = checkpoint;
+      this.clusterCount = clusterCount;
+      this.contextSwitchCount = contextSwitchCount;
+    }
+  }
+
+  private final Scheduler scheduler;
+  private final Workload workload;
+  private final ArrayList<Cluster> clusters = new ArrayList<>();
+  private final ArrayList<int[]> contextSwitches = new ArrayList<>();
+  private final ArrayList<Mark> marks = new ArrayList<>(); // In time order
+
+  public WhatIfSimulation(Scheduler scheduler, Workload workload, int checkpointInterval) {
+    if (checkpointInterval < 1) {
+      throw new IllegalArgumentException("Checkpoint interval must be positive");
+    }
+    this.scheduler = scheduler;
+    this.workload = workload;
+    SchedulerRun run = scheduler.start(Chart.recorder(clusters, contextSwitches));
+    long nextCheckpoint = 0;
+    // Processes arriving before time 0 are never admitted
+    NavigableMap<Integer, ArrayList<Process>> arrivals = workload.getArrivalTimeProcesses().tailMap(0, true);
+    for (Map.Entry<Integer, ArrayList<Process>> entry : arrivals.entrySet()) {
+      int time = entry.getKey();
+      if (time >= nextCheckpoint) {
+        run.advanceTo(time);
+        marks.add(new Mark(run.checkpoint(), clusters.size(), contextSwitches.size()));
+        nextCheckpoint = (long) time + checkpointInterval;
+      }
+      for (Process process : entry.getValue()) {
+        run.submit(process);
+      }
+    }
+    run.finish();
+  }
+
+  public int getCheckpointCount() {
+    return marks.size();
+  }
+
+  public Chart getChart() {
+    return new Chart(new ArrayList<>(clusters), new ArrayList<>(contextSwitches));
+  }
+
+  // The chart of the changed workload, as if it had been scheduled from scratch
+  public Chart whatIf(Workload changed) {
+    int change = firstChange(workload, changed);
+    if (change == SchedulerRun.NEVER) {
+      return getChart();
+    }
+    Mark mark = null;
+    for (int i = marks.size() - 1; i >= 0 && mark == null; --i) {
+      if (marks.get(i).checkpoint.getTime() <= change) {
+        mark = marks.get(i);
+      }
+    }
+    if (mark == null) {
+      return Chart.of(scheduler, changed);
+    }
+    ArrayList<Cluster> newClusters = new ArrayList<>(clusters.subList(0, mark.clusterCount));
+    ArrayList<int[]> newContextSwitches = new ArrayList<>(contextSwitches.subList(0, mark.contextSwitchCount));
+    SchedulerRun run = mark.checkpoint.resume(Chart.recorder(newClusters, newContextSwitches));
+    for (ArrayList<Process> li : changed.getArrivalTimeProcesses().tailMap(mark.checkpoint.getTime(), true).values()) {
+      for (Process process : li) {
+        run.submit(process);
+      }
+    }
+    run.finish();
+    return new Chart(newClusters, newContextSwitches);
+  }
+
+  // Earliest arrival time from 0 on at which the workloads differ, NEVER if they don't
+  private static int firstChange(Workload workload, Workload changed) {
+    Iterator<Map.Entry<Integer, ArrayList<Process>>> it = workload.getArrivalTimeProcesses().tailMap(0, true)
+        .entrySet().iterator();
+    Iterator<Map.Entry<Integer, ArrayList<Process>>> changedIt = changed.getArrivalTimeProcesses().tailMap(0, true)
+        .entrySet().iterator();
+    while (it.hasNext() || changedIt.hasNext()) {
+      if (!it.hasNext()) { return changedIt.next().getKey(); }
+      if (!changedIt.hasNext()) { return it.next().getKey(); }
+      Map.Entry<Integer, ArrayList<Process>> entry = it.next();
+      Map.Entry<Integer, ArrayList<Process>> changedEntry = changedIt.next();
+      int time = entry.getKey();
+      int changedTime = changedEntry.getKey();
+      if (time != changedTime) { return Math.min(time, changedTime); }
+      if (!isSame(entry.getValue(), changedEntry.getValue())) { return time; }
+    }
+    return SchedulerRun.NEVER;
+  }
+
+  private static boolean isSame(ArrayList<Process> li, ArrayList<Process> changedLi) {
+    if (li.size() != changedLi.size()) { return false; }
+    for (int i = 0; i < li.size(); ++i) {
+      Process process = li.get(i);
+      Process changedProcess = changedLi.get(i);
+      if (process != changedProcess && (!process.getName().equals(changedProcess.getName())
+          || process.getArrivalTime() != changedProcess.getArrivalTime()
+          || process.getBurstTime() != changedProcess.getBurstTime()
+          || process.getPriority() != changedProcess.getPriority())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
+
+// Inclusive range of integers, written as from[:to[:step]]
+class IntRange {
+  private final int from;
+  private final int to;
+  private final int step;
+
+  public IntRange(int from, int to, int step) {
+    if (step <= 0 || to < from) {
+      throw new IllegalArgumentException("Bad range " + from + ":" + to + ":" + step);
+    }
+    this.from = from;
+    this.to = to;
+    this.step = step;
+  }
+
+  public static IntRange of(int value) {
+    return new IntRange(value, value, 1);
+  }
+
+  public static IntRange parse(String text) {
+    String[] parts = text.split(":");
+    if (parts.length > 3) {
+      throw new IllegalArgumentException("Bad range " + text);
+    }
+    int from = Integer.parseInt(parts[0]);
+    int to = parts.length > 1 ? Integer.parseInt(parts[1]) : from;
+    int step = parts.length > 2 ? Integer.parseInt(parts[2]) : 1;
+    return new IntRange(from, to, step);
+  }
+
+  public int[] values() {
+    int[] values = new int[(to - from) / step + 1];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = from + i * step;
+    }
+    return values;
+  }
+
+}
+
+class SweepReport {
+  private final int[] quantums;
+  private final int[] contextSwitchingTimes;
+  private final int[] srtfAges;
+  private final int[] priorityAges;
+  private final boolean isSwitchCostForAll;
+  // Cs -> {avg waiting, avg turnaround} of SJF
+  private final Map<Integer, double[]> sjf;
+  // key(own parameter, switch cost) -> {avg waiting, avg turnaround}, the cost is 0 unless isSwitchCostForAll
+  private final Map<Long, double[]> srtf;
+  private final Map<Long, double[]> priority;
+  private final Map<Long, double[]> roundRobin;
+
+  public SweepReport(int[] quantums, int[] contextSwitchingTimes, int[] srtfAges, int[] priorityAges,
+                     boolean isSwitchCostForAll, Map<Integer, double[]> sjf, Map<Long, double[]> srtf,
+                     Map<Long, double[]> priority, Map<Long, double[]> roundRobin) {
+    this.quantums = quantums;
+    this.contextSwitchingTimes = contextSwitchingTimes;
+    this.srtfAges = srtfAges;
+    this.priorityAges = priorityAges;
+    this.isSwitchCostForAll = isSwitchCostForAll;
+    this.sjf = sjf;
+    this.srtf = srtf;
+    this.priority = priority;
+    this.roundRobin = roundRobin;
+  }
+
+  static long key(int parameter, int switchCost) {
+    return ((long) parameter << 32) | (switchCost & 0xFFFFFFFFL);
+  }
+
+  public void print() {
+    System.out.printf("%8s %8s %8s %8s | %19s | %19s | %19s | %19s%n", "quantum", "cs", "srtfAge", "prioAge",
+        "SJF wait/turn", "SRTF wait/turn", "Priority wait/turn", "RR wait/turn");
+    for (int q : quantums) {
+      for (int c : contextSwitchingTimes) {
+        for (int srtfAge : srtfAges) {
+          for (int priorityAge : priorityAges) {
+            int switchCost = isSwitchCostForAll ? c : 0;
+            System.out.printf("%8d %8d %8d %8d | %s | %s | %s | %s%n", q, c, srtfAge, priorityAge, format(sjf.get(c)),
+                format(srtf.get(key(srtfAge, switchCost))), format(priority.get(key(priorityAge, switchCost))),
+                format(roundRobin.get(key(q, switchCost))));
+          }
+        }
+      }
+    }
+    printBest("SJF", "cs", sjf);
+    printBestWithCost("SRTF", "srtfAge", srtf);
+    printBestWithCost("Priority", "prioAge", priority);
+    printBestWithCost("RR", "quantum", roundRobin);
+    System.out.println("====================================");
+  }
+
+  private static String format(double[] averages) {
+    return String.format("%9.3f %9.3f", averages[0], averages[1]);
+  }
+
+  private static void printBest(String scheduler, String parameter, Map<Integer, double[]> results) {
+    int best = -1;
+    for (var entry : results.entrySet()) {
+      if (best == -1 || entry.getValue()[0] < results.get(best)[0]) {
+        best = entry.getKey();
+      }
+    }
+    System.out.println("Best " + scheduler + ": " + parameter + " = " + best + " (avg waiting " + results.get(best)[0] + ")");
+  }
+
+  // The cs is told only when it was swept for every scheduler
+  private void printBestWithCost(String scheduler, String parameter, Map<Long, double[]> results) {
+    long best = 0;
+    double[] bestAverages = null;
+    for (var entry : results.entrySet()) {
+      if (bestAverages == null || entry.getValue()[0] < bestAverages[0]) {
+        best = entry.getKey();
+        bestAverages = entry.getValue();
+      }
+    }
+    String cost = isSwitchCostForAll ? ", cs = " + (int) best : "";
+    System.out.println("Best " + scheduler + ": " + parameter + " = " + (int) (best >>> 32) + cost
+        + " (avg waiting " + bestAverages[0] + ")");
+  }
+
+}
+
+// Runs a parameter grid in parallel against one shared workload. Each parameter only changes one scheduler,
+// cs aside, so every scheduler runs once per value of its own parameter instead of once per grid cell. Only
+// SJF pays the context switch time unless isSwitchCostForAll, as with compare; then SRTF, Priority and RR
+// run once per value of their own parameter and of cs
+class SweepRunner {
+  private final ForkJoinPool pool;
+  private final AgFactorSource agFactorSource;
+  private final boolean isSwitchCostForAll;
+
+  public SweepRunner(AgFactorSource agFactorSource, boolean isSwitchCostForAll) {
+    this(ForkJoinPool.commonPool(), agFactorSource, isSwitchCostForAll);
+  }
+
+  public SweepRunner(ForkJoinPool pool, AgFactorSource agFactorSource, boolean isSwitchCostForAll) {
+    this.pool = pool;
+    this.agFactorSource = agFactorSource;
+    this.isSwitchCostForAll = isSwitchCostForAll;
+  }
+
+  public SweepReport run(Workload workload, IntRange quantums, IntRange contextSwitchingTimes,
+                         IntRange srtfAges, IntRange priorityAges) {
+    Map<Integer, ForkJoinTask<double[]>> sjf = new TreeMap<>();
+    Map<Long, ForkJoinTask<double[]>> srtf = new TreeMap<>();
+    Map<Long, ForkJoinTask<double[]>> priority = new TreeMap<>();
+    Map<Long, ForkJoinTask<double[]>> roundRobin = new TreeMap<>();
+    for (int c : contextSwitchingTimes.values()) {
+      sjf.put(c, pool.submit(() -> runOne(new SjfScheduler(c), workload)));
+    }
+    int[] switchCosts = isSwitchCostForAll ? contextSwitchingTimes.values() : new int[] {0};
+    for (int cost : switchCosts) {
+      for (int age : srtfAges.values()) {
+        srtf.put(SweepReport.key(age, cost), pool.submit(() -> runOne(new SrtfScheduler(age, cost), workload)));
+      }
+      for (int age : priorityAges.values()) {
+        priority.put(SweepReport.key(age, cost), pool.submit(() -> runOne(new PriorityScheduler(age, cost), workload)));
+      }
+      for (int q : quantums.values()) {
+        roundRobin.put(SweepReport.key(q, cost),
+            pool.submit(() -> runOne(new RoundRobinScheduler(q, agFactorSource, cost), workload)));
+      }
+    }
+    return new SweepReport(quantums.values(), contextSwitchingTimes.values(), srtfAges.values(), priorityAges.values(),
+        isSwitchCostForAll, join(sjf), join(srtf), join(priority), join(roundRobin));
+  }
+
+  private static double[] runOne(Scheduler scheduler, Workload workload) {
+    ScheduleMetrics metrics = new ScheduleMetrics();
+    scheduler.schedule(workload, metrics);
+    return new double[] {metrics.getAvgWaitingTime(), metrics.getAvgTurnAroundTime()};
+  }
+
+  private static <K> Map<K, double[]> join(Map<K, ForkJoinTask<double[]>> tasks) {
+    Map<K, double[]> results = new TreeMap<>();
+    for (var entry : tasks.entrySet()) {
+      results.put(entry.getKey(), entry.getValue().join());
+    }
+    return results;
+  }
+
+}
+
+// Shape of a synthetic benchmark workload
+enum BurstShape {
+  UNIFORM, // 1 to 19
+  HEAVY_TAILED, // Pareto with alpha 1.5, a few processes run thousands of times longer than most
+  BIMODAL // 90% interactive (1 to 4), 10% batch (50 to 150)
+}
+
+// Reproducible synthetic workload for the benchmarks. Arrivals keep the cpu about 90% busy; with
+// burstiness b they come in clumps of 1 + b processes on average at once
+class BenchmarkWorkload {
+  private final int count;
+  private final BurstShape burstShape;
+  private final double burstiness;
+  private final int prioritySpread;
+  private final long seed;
+
+  public BenchmarkWorkload(int count, BurstShape burstShape, double burstiness, int prioritySpread, long seed) {
+    this.count = count;
+    this.burstShape = burstShape;
+    this.burstiness = burstiness;
+    this.prioritySpread = prioritySpread;
+    this.seed = seed;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  private Distribution bursts() {
+    switch (burstShape) {
+      case UNIFORM: return Distribution.uniform(0, 19);
+      case HEAVY_TAILED: return Distribution.pareto(1.5, 1).truncatedAt(1_000_000);
+      default: return Distribution.mixture(0.9, Distribution.uniform(0, 4), Distribution.uniform(49, 150));
+    }
+  }
+
+  public Process[] generate() {
+    Distribution bursts = bursts();
+    WorkloadGenerator generator = new WorkloadGenerator(count, ArrivalPattern.bursty(0.9 / bursts.mean(), burstiness),
+        bursts, Distribution.uniform(0, prioritySpread), seed);
+    Process[] processes = new Process[count];
+    int i = 0;
+    for (Process process : generator) {
+      processes[i++] = process;
+    }
+    return processes;
+  }
+
+  @Override
+  public String toString() {
+    return count + "/" + burstShape.name().toLowerCase().replace('_', '-') + "/b" + burstiness + "/p"
+        + prioritySpread;
+  }
+
+}
+
+// Charts of earlier runs by content: the key is the SHA-256 of the workload's processes in arrival order and
+// the scheduler's class and parameters, so equal inputs hit whatever objects they come in. Recently used
+// charts are kept in memory as columns of ints up to maxBytes; with a directory, charts evicted from memory
+// are written there and read back on a later miss, the least recently used files going once they pass
+// maxDiskBytes. A hit builds a new chart on the requesting workload. Only reproducible schedulers can be
+// cached, an unseeded AG round robin draws different factors every run. Bump VERSION whenever a scheduler's
+// output changes
+class ResultCache {
+  static final int MAGIC = 0x43505543; // "CPUC"
+  static final int VERSION = 3;
+  // The columns object, the headers of its arrays, the key and the map entry
+  private static final int ENTRY_BYTES = 512;
+
+  private final long maxBytes;
+  private final Path directory; // Null without a disk tier
+  private final long maxDiskBytes;
+  private final LinkedHashMap<String, Columns> charts = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes;
+  private final Object disk = new Object(); // Guards diskBytes and the eviction of files
+  private long diskBytes = -1; // Of the files in the directory, -1 until they are counted
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder diskHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  // A chart as one int column per field, the process of a cluster being its place in admission order: the
+  // requesting workload has the same processes in the same order. Nothing else of the chart is kept, its
+  // processes, metrics and objects are made again by toChart
+  private static final class Columns {
+    final int[] indexes;
+    final boolean[] quantums; // The cluster is a ClusterQ
+    final int[] pids;
+    final int[] cores;
+    final int[] startTimes;
+    final int[] endTimes;
+    final int[] startQs;
+    final int[] endQs;
+    final int[] switchCores;
+    final int[] switchStartTimes;
+    final int[] switchEndTimes;
+    final long weight;
+
+    Columns(int clusterCount, int contextSwitchCount) {
+      indexes = new int[clusterCount];
+      quantums = new boolean[clusterCount];
+      pids = new int[clusterCount];
+      cores = new int[clusterCount];
+      startTimes = new int[clusterCount];
+      endTimes = new int[clusterCount];
+      startQs = new int[clusterCount];
+      endQs = new int[clusterCount];
+      switchCores = new int[contextSwitchCount];
+      switchStartTimes = new int[contextSwitchCount];
+      switchEndTimes = new int[contextSwitchCount];
+      weight = ENTRY_BYTES + 29L * clusterCount + 12L * contextSwitchCount;
+    }
+
+    // Null if a cluster runs a process the workload does not admit
+    static Columns of(Chart chart, ArrayList<Process> admitted) {
+      IdentityHashMap<Process, Integer> places = new IdentityHashMap<>(admitted.size());
+      for (Process process : admitted) {
+        places.put(process, places.size());
+      }
+      Columns columns = new Columns(chart.getClusterCount(), chart.getContextSwitchCount());
+      boolean[] isComplete = {true};
+      chart.replay(new ClusterListener() {
+        private int cluster;
+        private int contextSwitch;
+
+        @Override
+        public void onCluster(Cluster c) {
+          Integer index = places.get(c.getProcess());
+          if (index == null) {
+            isComplete[0] = false;
+            return;
+          }
+          columns.indexes[cluster] = index;
+          columns.quantums[cluster] = c instanceof ClusterQ;
+          columns.pids[cluster] = c.getPid();
+          columns.cores[cluster] = c.getCore();
+          columns.startTimes[cluster] = c.getStartTime();
+          columns.endTimes[cluster] = c.getEndTime();
+          columns.startQs[cluster] = c.getStartQ();
+          columns.endQs[cluster] = c.getEndQ();
+          cluster += 1;
+        }
+
+        @Override
+        public void onContextSwitch(int core, int startTime, int endTime) {
+          columns.switchCores[contextSwitch] = core;
+          columns.switchStartTimes[contextSwitch] = startTime;
+          columns.switchEndTimes[contextSwitch] = endTime;
+          contextSwitch += 1;
+        }
+      });
+      return isComplete[0] ? columns : null;
+    }
+
+    Chart toChart(ArrayList<Process> admitted) {
+      ArrayList<Cluster> clusters = new ArrayList<>(indexes.length);
+      for (int i = 0; i < indexes.length; ++i) {
+        Cluster cluster;
+        if (quantums[i]) {
+          ClusterQ clusterQ = new ClusterQ(admitted.get(indexes[i]), pids[i], startTimes[i], startQs[i]);
+          clusterQ.setEndQ(endQs[i]);
+          cluster = clusterQ;
+        } else {
+          cluster = new Cluster(admitted.get(indexes[i]), pids[i], startTimes[i]);
+        }
+        cluster.setCore(cores[i]);
+        cluster.setEndTime(endTimes[i]);
+        clusters.add(cluster);
+      }
+      ArrayList<int[]> contextSwitches = new ArrayList<>(switchCores.length);
+      for (int i = 0; i < switchCores.length; ++i) {
+        contextSwitches.add(new int[] {switchCores[i], switchStartTimes[i], switchEndTimes[i]});
+      }
+      return new Chart(clusters, contextSwitches);
+    }
+
+    // Column after column, gzip finds more runs that way
+    void writeTo(DataOutputStream out) throws IOException {
+      out.writeInt(indexes.length);
+      out.writeInt(switchCores.length);
+      for (int[] column : new int[][] {indexes, pids, cores, startTimes, endTimes, startQs, endQs}) {
+        for (int value : column) {
+          out.writeInt(value);
+        }
+      }
+      for (boolean isQuantum : quantums) {
+        out.writeBoolean(isQuantum);
+      }
+      for (int[] column : new int[][] {switchCores, switchStartTimes, switchEndTimes}) {
+        for (int value : column) {
+          out.writeInt(value);
+        }
+      }
+    }
+
+    // Null if the file does not fit a workload of processCount admitted processes
+    static Columns readFrom(DataInputStream in, int processCount) throws IOException {
+      int clusterCount = in.readInt();
+      int contextSwitchCount = in.readInt();
+      if (clusterCount < 0 || contextSwitchCount < 0) { return null; }
+      Columns columns = new Columns(clusterCount, contextSwitchCount);
+      for (int[] column : new int[][] {columns.indexes, columns.pids, columns.cores, columns.startTimes,
+          columns.endTimes, columns.startQs, columns.endQs}) {
+        for (int i = 0; i < column.length; ++i) {
+          column[i] = in.readInt();
+        }
+      }
+      for (int index : columns.indexes) {
+        if (index < 0 || index >= processCount) { return null; }
+      }
+      for (int i = 0; i < clusterCount; ++i) {
+        columns.quantums[i] = in.readBoolean();
+      }
+      for (int[] column : new int[][] {columns.switchCores, columns.switchStartTimes, columns.switchEndTimes}) {
+        for (int i = 0; i < column.length; ++i) {
+          column[i] = in.readInt();
+        }
+      }
+      return columns;
+    }
+  }
+
+  public ResultCache(long maxBytes) {
+    this(maxBytes, null, 0);
+  }
+
+  public ResultCache(long maxBytes, Path directory, long maxDiskBytes) {
+    this.maxBytes = maxBytes;
+    this.directory = directory;
+    this.maxDiskBytes = maxDiskBytes;
+  }
+
+  // Name, arrival, burst and priority of the processes a run admits, in the order it admits them
+  public static byte[] digest(Workload workload) {
+    MessageDigest digest = sha256();
+    ByteBuffer fields = ByteBuffer.allocate(12);
+    for (ArrayList<Process> li : workload.getArrivalTimeProcesses().tailMap(0, true).values()) {
+      for (Process process : li) {
+        byte[] name = process.getName().getBytes(StandardCharsets.UTF_8);
+        fields.clear();
+        fields.putInt(name.length).putInt(process.getArrivalTime()).putInt(process.getBurstTime());
+        digest.update(fields.array(), 0, 12);
+        digest.update(name);
+        fields.clear();
+        fields.putInt(process.getPriority());
+        digest.update(fields.array(), 0, 4);
+      }
+    }
+    return digest.digest();
+  }
+
+  public static String key(Scheduler scheduler, byte[] workloadDigest) {
+    ByteArrayOutputStream parameters = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(parameters)) {
+      out.writeInt(VERSION);
+      scheduler.writeConfiguration(out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    MessageDigest digest = sha256();
+    digest.update(workloadDigest);
+    digest.update(parameters.toByteArray());
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public Chart chartOf(Scheduler scheduler, Workload workload) {
+    return chartOf(scheduler, workload, digest(workload));
+  }
+
+  // The digest of the workload, to hash it once for all the schedulers run on it
+  public Chart chartOf(Scheduler scheduler, Workload workload, byte[] workloadDigest) {
+    if (!scheduler.isReproducible()) {
+      throw new IllegalArgumentException(scheduler.getName() + " is not reproducible, seed it to cache its charts");
+    }
+    String key = key(scheduler, workloadDigest);
+    ArrayList<Process> admitted = new ArrayList<>(workload.size());
+    for (ArrayList<Process> li : workload.getArrivalTimeProcesses().tailMap(0, true).values()) {
+      admitted.addAll(li);
+    }
+    Columns columns;
+    synchronized (charts) {
+      columns = charts.get(key);
+    }
+    if (columns != null) {
+      hits.increment();
+      return columns.toChart(admitted);
+    }
+    columns = read(key, admitted.size());
+    if (columns != null) {
+      diskHits.increment();
+      put(key, columns);
+      return columns.toChart(admitted);
+    }
+    misses.increment();
+    Chart chart = Chart.of(scheduler, workload);
+    columns = Columns.of(chart, admitted);
+    if (columns != null) {
+      put(key, columns);
+    }
+    return chart;
+  }
+
+  // Files are written after leaving the lock, a slow disk must not hold up hits
+  private void put(String key, Columns columns) {
+    ArrayList<Map.Entry<String, Columns>> evicted = new ArrayList<>();
+    synchronized (charts) {
+      Columns old = charts.put(key, columns);
+      bytes += columns.weight - (old == null ? 0 : old.weight);
+      Iterator<Map.Entry<String, Columns>> eldest = charts.entrySet().iterator();
+      while (bytes > maxBytes && eldest.hasNext()) {
+        Map.Entry<String, Columns> next = eldest.next();
+        bytes -= next.getValue().weight;
+        eldest.remove();
+        evicted.add(next);
+      }
+    }
+    if (directory == null) { return; }
+    for (Map.Entry<String, Columns> next : evicted) {
+      write(next.getKey(), next.getValue());
+    }
+  }
+
+  private void write(String key, Columns columns) {
+    Path path = directory.resolve(key + ".chart");
+    if (Files.exists(path)) { return; }
+    Path temporary = null;
+    try {
+      Files.createDirectories(directory);
+      temporary = Files.createTempFile(directory, key, ".tmp");
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temporary))))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        columns.writeTo(out);
+      }
+      long size = Files.size(temporary);
+      Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+      written(size);
+    } catch (IOException e) {
+      // Only a cache, the chart is computed again when it's asked for
+      if (temporary != null) {
+        try {
+          Files.deleteIfExists(temporary);
+        } catch (IOException ignored) {
+          // Left behind, never read
+        }
+      }
+    }
+  }
+
+  // Past maxDiskBytes the least recently used files go, down to three quarters of it so that the directory
+  // is not listed again on the next write. Reads touch their file
+  private void written(long size) throws IOException {
+    synchronized (disk) {
+      if (diskBytes >= 0) {
+        diskBytes += size;
+        if (diskBytes <= maxDiskBytes) { return; }
+      }
+      ArrayList<Path> files = new ArrayList<>();
+      HashMap<Path, FileTime> usedTimes = new HashMap<>();
+      HashMap<Path, Long> sizes = new HashMap<>();
+      long total = 0;
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.chart")) {
+        for (Path file : stream) {
+          try {
+            usedTimes.put(file, Files.getLastModifiedTime(file));
+            sizes.put(file, Files.size(file));
+          } catch (NoSuchFileException e) {
+            continue; // Removed since listed
+          }
+          files.add(file);
+          total += sizes.get(file);
+        }
+      }
+      if (total > maxDiskBytes) {
+        files.sort(Comparator.comparing(usedTimes::get));
+        for (Path file : files) {
+          if (total <= maxDiskBytes / 4 * 3) { break; }
+          Files.deleteIfExists(file);
+          total -= sizes.get(file);
+        }
+      }
+      diskBytes = total;
+    }
+  }
+
+  private Columns read(String key, int processCount) {
+    if (directory == null) { return null; }
+    Path path = directory.resolve(key + ".chart");
+    if (!Files.exists(path)) { return null; }
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path))))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) { return null; }
+      Columns columns = Columns.readFrom(in, processCount);
+      if (columns != null) {
+        Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+      }
+      return columns;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  // Writes out the charts still in memory, so the disk tier outlives the process
+  public void flush() {
+    if (directory == null) { return; }
+    ArrayList<Map.Entry<String, Columns>> entries;
+    synchronized (charts) {
+      entries = new ArrayList<>(charts.entrySet());
+    }
+    for (Map.Entry<String, Columns> entry : entries) {
+      write(entry.getKey(), entry.getValue());
+    }
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getDiskHitCount() {
+    return diskHits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  // Bytes of the charts in memory
+  public long getSize() {
+    synchronized (charts) {
+      return bytes;
+    }
+  }
+
+  // Bytes of the files in the directory as last counted, -1 before the first write
+  public long getDiskSize() {
+    synchronized (disk) {
+      return diskBytes;
+    }
+  }
+
+}
+
+// Long-running simulation service, so small workloads don't pay for a JVM start and a cold JIT each time.
+// POST /simulate with a trace (CSV or the binary format of TraceWriter) as the body runs every scheduler of
+// SchedulerFactory on it; the query takes the options of compare: quantum, cs, cs-all, seed, cores, balance,
+// steal, plus format=json|binary and segments=false to leave the charts out. Requests are queued and each
+// worker takes a batch of them at once, running the simulations back to back on its own thread. A full
+// queue answers 503, and a simulation that fails (even out of memory) fails its request only. A body over
+// maxBodyBytes answers 413 without being read further, whether or not its length is announced. With a
+// ResultCache, charts of reproducible schedulers (all of them once seeded) are reused for repeated traces
+class SimulationServer implements AutoCloseable {
+  static final int MAGIC = 0x43505552; // "CPUR"
+  static final int VERSION = 1;
+  static final int DEFAULT_MAX_BODY_BYTES = 64 << 20;
+  private final HttpServer server;
+  private final ExecutorService handlers; // Parse requests and wait for their simulations
+  private final BlockingQueue<Simulation> simulations;
+  private final Thread[] workers;
+  private final int maxBatch;
+  private final int maxBodyBytes;
+  private final ResultCache cache; // Null to run every simulation
+
+  private static final class Simulation {
+    final List<Scheduler> schedulers;
+    final Workload workload;
+    final CompletableFuture<List<Chart>> charts = new CompletableFuture<>();
+
+    Simulation(List<Scheduler> schedulers, Workload workload) {
+      this.schedulers = schedulers;
+      this.workload = workload;
+    }
+  }
+
+  public SimulationServer(int port, int workerCount, int maxBatch) throws IOException {
+    this(port, workerCount, maxBatch, 4 * workerCount * maxBatch, DEFAULT_MAX_BODY_BYTES, null);
+  }
+
+  public SimulationServer(int port, int workerCount, int maxBatch, int maxQueued, int maxBodyBytes,
+                          ResultCache cache) throws IOException {
+    if (workerCount < 1 || maxBatch < 1 || maxQueued < 1) {
+      throw new IllegalArgumentException("At least one worker, a batch of one and a queue of one are needed");
+    }
+    if (maxBodyBytes < 1 || maxBodyBytes == Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("The body limit must be between 1 and " + (Integer.MAX_VALUE - 1));
+    }
+    this.maxBatch = maxBatch;
+    this.maxBodyBytes = maxBodyBytes;
+    this.cache = cache;
+    this.simulations = new ArrayBlockingQueue<>(maxQueued);
+    this.workers = new Thread[workerCount];
+    for (int i = 0; i < workerCount; ++i) {
+      workers[i] = new Thread(this::work, "simulation-" + i);
+      workers[i].setDaemon(true);
+    }
+    this.handlers = Executors.newFixedThreadPool(4 * workerCount);
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/simulate", this::handle);
+    server.setExecutor(handlers);
+  }
+
+  public void start() {
+    for (Thread worker : workers) {
+      worker.start();
+    }
+    server.start();
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    handlers.shutdownNow();
+    for (Thread worker : workers) {
+      worker.interrupt();
+    }
+    if (cache != null) {
+      cache.flush();
+    }
+  }
+
+  private void work() {
+    ArrayList<Simulation> batch = new ArrayList<>(maxBatch);
+    try {
+      while (true) {
+        batch.add(simulations.take());
+        simulations.drainTo(batch, maxBatch - 1);
+        for (Simulation simulation : batch) {
+          run(simulation);
+        }
+        batch.clear();
+      }
+    } catch (InterruptedException e) {
+      for (Simulation simulation : batch) {
+        simulation.charts.cancel(false);
+      }
+    }
+  }
+
+  private void run(Simulation simulation) {
+    try {
+      ArrayList<Chart> charts = new ArrayList<>();
+      byte[] digest = cache == null ? null : ResultCache.digest(simulation.workload);
+      for (Scheduler scheduler : simulation.schedulers) {
+        if (cache != null && scheduler.isReproducible()) {
+          charts.add(cache.chartOf(scheduler, simulation.workload, digest));
+        } else {
+          charts.add(Chart.of(scheduler, simulation.workload));
+        }
+      }
+      simulation.charts.complete(charts);
+    } catch (RuntimeException | Error e) {
+      // The worker goes on with the next simulation, the charts of this one are garbage by now
+      simulation.charts.completeExceptionally(e);
+    }
+  }
+
+  // Null if the body is over maxBodyBytes: then at most one byte more is read, and nothing at all when
+  // Content-Length gives it away. A chunked body grows in small buffers as it comes
+  private byte[] readBody(HttpExchange exchange) throws IOException {
+    String length = exchange.getRequestHeaders().getFirst("Content-Length");
+    if (length != null && Long.parseLong(length.trim()) > maxBodyBytes) { return null; }
+    byte[] body = exchange.getRequestBody().readNBytes(maxBodyBytes + 1);
+    return body.length > maxBodyBytes ? null : body;
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      if (!exchange.getRequestMethod().equals("POST")) {
+        sendError(exchange, 405, "Use POST with a trace as the body");
+        return;
+      }
+      Map<String, String> options = parseQuery(exchange.getRequestURI().getRawQuery());
+      List<Scheduler> schedulers;
+      Workload workload;
+      try {
+        schedulers = newSchedulers(options);
+        byte[] body = readBody(exchange);
+        if (body == null) {
+          sendError(exchange, 413, "Trace over the limit of " + maxBodyBytes + " bytes");
+          return;
+        }
+        ArrayList<Process> processes = new ArrayList<>();
+        TraceLoader.forEach(ByteBuffer.wrap(body), processes::add);
+        workload = Workload.of(processes);
+      } catch (IOException | IllegalArgumentException e) {
+        sendError(exchange, 400, e.getMessage());
+        return;
+      }
+      Simulation simulation = new Simulation(schedulers, workload);
+      if (!simulations.offer(simulation)) {
+        sendError(exchange, 503, "Too many simulations queued, retry later");
+        return;
+      }
+      List<Chart> charts;
+      try {
+        charts = simulation.charts.get();
+      } catch (ExecutionException | CancellationException e) {
+        sendError(exchange, 500, String.valueOf(e.getCause()));
+        return;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      boolean isWithSegments = !options.getOrDefault("segments", "true").equals("false");
+      if (options.getOrDefault("format", "json").equals("binary")) {
+        send(exchange, "application/octet-stream", toBinary(schedulers, charts, isWithSegments));
+      } else {
+        send(exchange, "application/json",
+            toJson(schedulers, charts, isWithSegments).getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  private static Map<String, String> parseQuery(String query) {
+    HashMap<String, String> options = new HashMap<>();
+    if (query == null) { return options; }
+    for (String pair : query.split("&")) {
+      int equals = pair.indexOf('=');
+      if (equals > 0) {
+        options.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+            URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+      }
+    }
+    return options;
+  }
+
+  // The defaults are those of compare
+  private static List<Scheduler> newSchedulers(Map<String, String> options) {
+    String seed = options.get("seed");
+    int quantum = Integer.parseInt(options.getOrDefault("quantum", "4"));
+    int contextSwitchingTime = Integer.parseInt(options.getOrDefault("cs", "0"));
+    int coreCount = Integer.parseInt(options.getOrDefault("cores", "1"));
+    if (quantum < 1 || contextSwitchingTime < 0 || coreCount < 1) {
+      throw new IllegalArgumentException("Needs quantum >= 1, cs >= 0 and cores >= 1");
+    }
+    return SchedulerFactory.getAllSchedulers(quantum, contextSwitchingTime,
+        seed == null ? AgFactorSource.unseeded() : AgFactorSource.seeded(Long.parseLong(seed)), coreCount,
+        LoadBalancing.valueOf(options.getOrDefault("balance", "least-loaded").toUpperCase().replace('-', '_')),
+        Boolean.parseBoolean(options.getOrDefault("steal", "true")),
+        Boolean.parseBoolean(options.getOrDefault("cs-all", "false")));
+  }
+
+  // {"schedulers": [{"name", the averages, the summary, "processes": names by pid,
+  //   "segments": [[pid, start, end, startQ, endQ, core], ...]}, ...]}, context switches have pid -1
+  static String toJson(List<Scheduler> schedulers, List<Chart> charts, boolean isWithSegments) {
+    StringBuilder json = new StringBuilder(256);
+    json.append("{\"schedulers\":[");
+    for (int i = 0; i < charts.size(); ++i) {
+      Chart chart = charts.get(i);
+      ScheduleMetrics metrics = chart.getMetrics();
+      LatencySummary summary = metrics.getSummary();
+      json.append(i == 0 ? "{" : ",{");
+      json.append("\"name\":");
+      appendString(json, schedulers.get(i).getName());
+      appendNumber(json.append(",\"avgWaiting\":"), metrics.getAvgWaitingTime());
+      appendNumber(json.append(",\"avgTurnaround\":"), metrics.getAvgTurnAroundTime());
+      appendNumber(json.append(",\"avgResponse\":"), metrics.getAvgResponseTime());
+      json.append(",\"waitingP99\":").append(summary.getWaitingTimes().getValueAtPercentile(99));
+      json.append(",\"turnaroundP99\":").append(summary.getTurnAroundTimes().getValueAtPercentile(99));
+      json.append(",\"responseP99\":").append(summary.getResponseTimes().getValueAtPercentile(99));
+      appendNumber(json.append(",\"jain\":"), summary.getJainFairnessIndex());
+      json.append(",\"starved\":").append(summary.getStarvedCount());
+      json.append(",\"contextSwitches\":").append(summary.getContextSwitches());
+      appendNumber(json.append(",\"cpuUtilization\":"), summary.getCpuUtilization());
+      appendNumber(json.append(",\"overheadShare\":"), summary.getOverheadShare());
+      json.append(",\"clusters\":").append(chart.getClusterCount());
+      if (isWithSegments) {
+        json.append(",\"processes\":[");
+        for (int pid = 0; pid < metrics.getPidLimit(); ++pid) {
+          if (pid > 0) {
+            json.append(',');
+          }
+          if (metrics.hasRun(pid)) {
+            appendString(json, metrics.getName(pid));
+          } else {
+            json.append("null");
+          }
+        }
+        json.append("],\"segments\":[");
+        int[] count = new int[1];
+        chart.replay(new ClusterListener() {
+          @Override
+          public void onCluster(Cluster cluster) {
+            appendSegment(cluster.getPid(), cluster.getStartTime(), cluster.getEndTime(), cluster.getStartQ(),
+                cluster.getEndQ(), cluster.getCore());
+          }
+
+          @Override
+          public void onContextSwitch(int core, int startTime, int endTime) {
+            appendSegment(SegmentWriter.OVERHEAD_PID, startTime, endTime, -1, -1, core);
+          }
+
+          private void appendSegment(int pid, int startTime, int endTime, int startQ, int endQ, int core) {
+            json.append(count[0]++ == 0 ? "[" : ",[").append(pid).append(',').append(startTime).append(',')
+                .append(endTime).append(',').append(startQ).append(',').append(endQ).append(',').append(core)
+                .append(']');
+          }
+        });
+        json.append(']');
+      }
+      json.append('}');
+    }
+    return json.append("]}").toString();
+  }
+
+  // NaN and infinities have no JSON form, averages over no process are null
+  private static void appendNumber(StringBuilder json, double value) {
+    if (Double.isFinite(value)) {
+      json.append(value);
+    } else {
+      json.append("null");
+    }
+  }
+
+  private static void appendString(StringBuilder json, String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); ++i) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < 0x20) {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    json.append('"');
+  }
+
+  // Magic number, version and scheduler count, then per scheduler its name, the averages, utilization and
+  // overhead as doubles, the context switch count as a long, then unless the segments were left out the
+  // process names by pid and the segments as six ints each. Big-endian, strings are a length and UTF-8 bytes
+  static byte[] toBinary(List<Scheduler> schedulers, List<Chart> charts, boolean isWithSegments) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(charts.size());
+    for (int i = 0; i < charts.size(); ++i) {
+      Chart chart = charts.get(i);
+      ScheduleMetrics metrics = chart.getMetrics();
+      LatencySummary summary = metrics.getSummary();
+      out.writeUTF(schedulers.get(i).getName());
+      out.writeDouble(metrics.getAvgWaitingTime());
+      out.writeDouble(metrics.getAvgTurnAroundTime());
+      out.writeDouble(metrics.getAvgResponseTime());
+      out.writeDouble(summary.getCpuUtilization());
+      out.writeDouble(summary.getOverheadShare());
+      out.writeLong(summary.getContextSwitches());
+      if (!isWithSegments) { continue; }
+      out.writeInt(metrics.getPidLimit());
+      for (int pid = 0; pid < metrics.getPidLimit(); ++pid) {
+        out.writeUTF(metrics.hasRun(pid) ? metrics.getName(pid) : "");
+      }
+      ByteArrayOutputStream segments = new ByteArrayOutputStream();
+      DataOutputStream segmentOut = new DataOutputStream(segments);
+      int[] count = new int[1];
+      chart.replay(new ClusterListener() {
+        @Override
+        public void onCluster(Cluster cluster) {
+          writeSegment(cluster.getPid(), cluster.getStartTime(), cluster.getEndTime(), cluster.getStartQ(),
+              cluster.getEndQ(), cluster.getCore());
+        }
+
+        @Override
+        public void onContextSwitch(int core, int startTime, int endTime) {
+          writeSegment(SegmentWriter.OVERHEAD_PID, startTime, endTime, -1, -1, core);
+        }
+
+        private void writeSegment(int pid, int startTime, int endTime, int startQ, int endQ, int core) {
+          try {
+            segmentOut.writeInt(pid);
+            segmentOut.writeInt(startTime);
+            segmentOut.writeInt(endTime);
+            segmentOut.writeInt(startQ);
+            segmentOut.writeInt(endQ);
+            segmentOut.writeInt(core);
+            count[0] += 1;
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+      });
+      out.writeInt(count[0]);
+      segments.writeTo(out);
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+    StringBuilder json = new StringBuilder("{\"error\":");
+    appendString(json, message == null ? "unknown" : message);
+    byte[] body = json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, body.length);
+    exchange.getResponseBody().write(body);
+  }
+
+  private static void send(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(200, body.length);
+    exchange.getResponseBody().write(body);
+  }
+
+}
+
+class Main {
+  private static Scanner in = new Scanner(System.in);
+  private static int IntInput(String msg) {
+    System.out.println(msg);
+    return in.nextInt();
+  }
+
+  private static String StringInput(String msg) {
+    System.out.println(msg);
+    return in.next();
+  }
+
+  // Processes given as: count, then name arrival burst priority for each, without prompts
+  private static ArrayList<Process> readProcesses(Scanner scanner) {
+    int n = scanner.nextInt();
+    ArrayList<Process> processes = new ArrayList<>(n);
+    for (int i = 0; i < n; ++i) {
+      processes.add(new Process(scanner.next(), scanner.nextInt(), scanner.nextInt(), scanner.nextInt()));
+    }
+    return processes;
+  }
+
+  // From a trace file if one is given, from stdin otherwise
+  private static ArrayList<Process> readProcesses(String trace) throws IOException {
+    return trace == null ? readProcesses(in) : TraceLoader.load(Paths.get(trace));
+  }
+
+  // sweep [--trace F] [--quantum R] [--cs R] [--cs-all true] [--srtf-age R] [--priority-age R] [--seed S],
+  // R = from[:to[:step]]. Only SJF pays the context switch time unless --cs-all true, as with compare
+  private static void sweep(String[] args) throws IOException {
+    IntRange quantums = IntRange.of(4);
+    IntRange contextSwitchingTimes = IntRange.of(0);
+    IntRange srtfAges = IntRange.of(SrtfScheduler.DEFAULT_AGE);
+    IntRange priorityAges = IntRange.of(PriorityScheduler.DEFAULT_AGE);
+    boolean isSwitchCostForAll = false;
+    long seed = 0;
+    String trace = null;
+    for (int i = 1; i + 1 < args.length; i += 2) {
+      switch (args[i]) {
+        case "--trace": trace = args[i + 1]; break;
+        case "--quantum": quantums = IntRange.parse(args[i + 1]); break;
+        case "--cs": contextSwitchingTimes = IntRange.parse(args[i + 1]); break;
+        case "--cs-all": isSwitchCostForAll = Boolean.parseBoolean(args[i + 1]); break;
+        case "--srtf-age": srtfAges = IntRange.parse(args[i + 1]); break;
+        case "--priority-age": priorityAges = IntRange.parse(args[i + 1]); break;
+        case "--seed": seed = Long.parseLong(args[i + 1]); break;
+        default: throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+    }
+    Workload workload = Workload.of(readProcesses(trace));
+    new SweepRunner(AgFactorSource.seeded(seed), isSwitchCostForAll)
+        .run(workload, quantums, contextSwitchingTimes, srtfAges, priorityAges)
+        .print();
+  }
+
+  // Segment file of one scheduler, PREFIX-SchedulerName.seg or .csv
+  private static SegmentWriter openSegmentWriter(String prefix, String format, String schedulerName)
+      throws IOException {
+    schedulerName = schedulerName.replace(' ', '-');
+    switch (format) {
+      case "binary": return SegmentWriter.binary(Paths.get(prefix + "-" + schedulerName + ".seg"));
+      case "csv": return SegmentWriter.delimited(Paths.get(prefix + "-" + schedulerName + ".csv"));
+      default: throw new IllegalArgumentException("Unknown chart format " + format);
+    }
+  }
+
+  // Synthetic workload, D is a Distribution and A an ArrivalPattern spec. By default bursts are exponential
+  // with mean 10, priorities uniform from 1 to 10 and arrivals Poisson keeping one cpu 90% busy
+  private static WorkloadGenerator newGenerator(long count, String arrivals, String bursts, String priorities,
+                                                long seed) {
+    Distribution burstDistribution = Distribution.parse(bursts == null ? "exponential:10" : bursts);
+    return new WorkloadGenerator(count, arrivals == null
+        ? WorkloadGenerator.poissonAtLoad(burstDistribution, 0.9) : ArrivalPattern.parse(arrivals),
+        burstDistribution, Distribution.parse(priorities == null ? "uniform:0:10" : priorities), seed);
+  }
+
+  // generate --count N --out F [--format binary|csv] [--arrivals A] [--bursts D] [--priorities D] [--seed S]
+  private static void generate(String[] args) throws IOException {
+    long count = 0;
+    String out = null;
+    String format = "binary";
+    String arrivals = null;
+    String bursts = null;
+    String priorities = null;
+    long seed = 0;
+    for (int i = 1; i + 1 < args.length; i += 2) {
+      switch (args[i]) {
+        case "--count": count = Long.parseLong(args[i + 1]); break;
+        case "--out": out = args[i + 1]; break;
+        case "--format": format = args[i + 1]; break;
+        case "--arrivals": arrivals = args[i + 1]; break;
+        case "--bursts": bursts = args[i + 1]; break;
+        case "--priorities": priorities = args[i + 1]; break;
+        case "--seed": seed = Long.parseLong(args[i + 1]); break;
+        default: throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+    }
+    if (out == null) {
+      throw new IllegalArgumentException("generate needs --out");
+    }
+    Path path = Paths.get(out);
+    try (TraceWriter writer = format.equals("csv") ? TraceWriter.delimited(path) : TraceWriter.binary(path)) {
+      newGenerator(count, arrivals, bursts, priorities, seed).forEach(writer);
+    }
+  }
+
+  // check-split [--runs N] [--seed S]
+  // Runs every built-in scheduler and policy on N random workloads with idle gaps, once in one piece and once
+  // split as compare --split true does, and fails if any chart differs. gradle check runs it
+  private static void checkSplit(String[] args) {
+    int runs = 150;
+    long seed = 0;
+    for (int i = 1; i + 1 < args.length; i += 2) {
+      switch (args[i]) {
+        case "--runs": runs = Integer.parseInt(args[i + 1]); break;
+        case "--seed": seed = Long.parseLong(args[i + 1]); break;
+        default: throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+    }
+    Random random = new Random(seed);
+    ParallelSimulation parallelSimulation = new ParallelSimulation();
+    int mismatches = 0;
+    for (int run = 0; run < runs; ++run) {
+      int q = 1 + random.nextInt(6);
+      int c = random.nextInt(3);
+      String arrivals = "poisson:0.0" + (2 + random.nextInt(7));
+      Workload workload = Workload.of(
+          newGenerator(500 + random.nextInt(2000), arrivals, null, "uniform:0:" + random.nextInt(30), random.nextLong())
+              .toList());
+      ArrayList<Scheduler> schedulers = SchedulerFactory.getAllSchedulers(q, c,
+          AgFactorSource.seeded(random.nextLong()), 1, LoadBalancing.LEAST_LOADED, true, true);
+      schedulers.addAll(SchedulerFactory.getPolicySchedulers("all", c, 1, LoadBalancing.LEAST_LOADED, true));
+      schedulers.add(new PolicyScheduler(new LotteryPolicy(q, random.nextLong()), c));
+      for (Scheduler scheduler : schedulers) {
+        if (!segmentsOf(Chart.of(scheduler, workload)).equals(segmentsOf(parallelSimulation.run(scheduler, workload)))) {
+          System.out.println("Run " + run + ": " + scheduler.getName() + " split differs");
+          mismatches += 1;
+        }
+      }
+    }
+    if (mismatches > 0) {
+      throw new IllegalStateException(mismatches + " split runs differ from the sequential ones");
+    }
+    System.out.println("Split and sequential charts match in " + runs + " runs");
+  }
+
+  // Every field of the clusters and context switches, in order
+  private static List<List<Integer>> segmentsOf(Chart chart) {
+    List<List<Integer>> segments = new ArrayList<>();
+    chart.replay(new ClusterListener() {
+      @Override
+      public void onCluster(Cluster cluster) {
+        segments.add(List.of(cluster.getPid(), cluster.getCore(), cluster.getStartTime(), cluster.getEndTime(),
+            cluster.getStartQ(), cluster.getEndQ()));
+      }
+
+      @Override
+      public void onContextSwitch(int core, int startTime, int endTime) {
+        segments.add(List.of(-1, core, startTime, endTime));
+      }
+    });
+    return segments;
+  }
+
+  // compare|stream [--trace F] [--quantum Q] [--cs C] [--cs-all true] [--policies mlfq,cfs,fcfs,...|all] [--seed S]
+  //                [--mlfq-quanta 4,8,16] [--mlfq-boost 200] [--split true]
+  //                [--chart PREFIX] [--chart-format binary|csv] [--ascii true] [--cores N]
+  //                [--balance least-loaded|round-robin] [--steal true|false]
+  //                [--generate N] [--arrivals A] [--bursts D] [--priorities D] [--workload-seed S]
+  // compare loads the whole workload and runs the schedulers in parallel, stream reads the trace once
+  // and feeds every arrival to all schedulers in online mode, so the workload is never held in memory.
+  // --generate replaces the trace with N synthetic processes, see generate.
+  // --chart writes the segments of each scheduler to a file, --ascii draws them to the terminal width.
+  // With --cores every algorithm runs on N cpus, idle cpus steal work unless --steal false.
+  // Only SJF pays the context switch time unless --cs-all true. --policies adds MLFQ, CFS and the named
+  // SchedulingPolicy schedulers, the built-in ones and those on the class path. --mlfq-quanta sets one quantum
+  // per MLFQ level, --mlfq-boost how often all go back to the top level, 0 for never.
+  // --split true also cuts the workload where the cpu goes idle and runs the pieces in parallel, same charts.
+  // With -Dscheduler.instrumentation=true the counters of every scheduler follow the report, they are also
+  // in JMX under scheduler:type=Counters and in JFR as scheduler.ScheduleRun events
+  private static void compare(String[] args, boolean isStreaming) throws IOException {
+    int q = 4;
+    int c = 0;
+    AgFactorSource agFactorSource = AgFactorSource.unseeded();
+    String trace = null;
+    String chartPrefix = null;
+    String chartFormat = "binary";
+    boolean isAscii = false;
+    int cores = 1;
+    LoadBalancing loadBalancing = LoadBalancing.LEAST_LOADED;
+    boolean isWorkStealing = true;
+    boolean isSwitchCostForAll = false;
+    String policies = null;
+    int[] mlfqQuanta = MlfqPolicy.DEFAULT_QUANTA;
+    int mlfqBoostPeriod = MlfqPolicy.DEFAULT_BOOST_PERIOD;
+    boolean isSplitAtIdleGaps = false;
+    long generatedCount = 0;
+    String arrivals = null;
+    String bursts = null;
+    String priorities = null;
+    long workloadSeed = 0;
+    for (int i = 1; i + 1 < args.length; i += 2) {
+      switch (args[i]) {
+        case "--trace": trace = args[i + 1]; break;
+        case "--generate": generatedCount = Long.parseLong(args[i + 1]); break;
+        case "--arrivals": arrivals = args[i + 1]; break;
+        case "--bursts": bursts = args[i + 1]; break;
+        case "--priorities": priorities = args[i + 1]; break;
+        case "--workload-seed": workloadSeed = Long.parseLong(args[i + 1]); break;
+        case "--quantum": q = Integer.parseInt(args[i + 1]); break;
+        case "--cs": c = Integer.parseInt(args[i + 1]); break;
+        case "--cs-all": isSwitchCostForAll = Boolean.parseBoolean(args[i + 1]); break;
+        case "--policies": policies = args[i + 1]; break;
+        case "--mlfq-quanta": mlfqQuanta = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray(); break;
+        case "--mlfq-boost": mlfqBoostPeriod = Integer.parseInt(args[i + 1]); break;
+        case "--split": isSplitAtIdleGaps = Boolean.parseBoolean(args[i + 1]); break;
+        case "--seed": agFactorSource = AgFactorSource.seeded(Long.parseLong(args[i + 1])); break;
+        case "--chart": chartPrefix = args[i + 1]; break;
+        case "--chart-format": chartFormat = args[i + 1]; break;
+        case "--ascii": isAscii = Boolean.parseBoolean(args[i + 1]); break;
+        case "--cores": cores = Integer.parseInt(args[i + 1]); break;
+        case "--balance": loadBalancing = LoadBalancing.valueOf(args[i + 1].toUpperCase().replace('-', '_')); break;
+        case "--steal": isWorkStealing = Boolean.parseBoolean(args[i + 1]); break;
+        default: throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+    }
+    ArrayList<Scheduler> schedulers = SchedulerFactory.getAllSchedulers(q, c, agFactorSource, cores, loadBalancing,
+        isWorkStealing, isSwitchCostForAll);
+    if (policies != null) {
+      schedulers.addAll(SchedulerFactory.getPolicySchedulers(policies, isSwitchCostForAll ? c : 0, cores,
+          loadBalancing, isWorkStealing, mlfqQuanta, mlfqBoostPeriod));
+    }
+    WorkloadGenerator generator = generatedCount > 0
+        ? newGenerator(generatedCount, arrivals, bursts, priorities, workloadSeed) : null;
+    if (!isStreaming) {
+      ComparisonReport report = new ComparisonRunner(ForkJoinPool.commonPool(), isSplitAtIdleGaps).run(schedulers,
+          Workload.of(generator != null ? generator.toList() : readProcesses(trace)));
+      for (SchedulerResult result : report.getResults()) {
+        if (chartPrefix != null) {
+          try (SegmentWriter writer = openSegmentWriter(chartPrefix, chartFormat, result.getName())) {
+            result.getChart().replay(writer);
+          }
+        }
+        if (isAscii) {
+          AsciiChart chart = AsciiChart.forTerminal();
+          result.getChart().replay(chart);
+          System.out.print(result.getName() + System.lineSeparator() + chart.render());
+        }
+      }
+      report.print();
+      if (SchedulerCounters.ENABLED) {
+        SchedulerCounters.print(System.out);
+      }
+      return;
+    }
+    if (trace == null && generator == null) {
+      throw new IllegalArgumentException("stream needs --trace or --generate");
+    }
+    long[] clusterCounts = new long[schedulers.size()];
+    ScheduleMetrics[] metrics = new ScheduleMetrics[schedulers.size()];
+    SegmentWriter[] writers = new SegmentWriter[schedulers.size()];
+    AsciiChart[] charts = new AsciiChart[schedulers.size()];
+    SchedulerRun[] runs = new SchedulerRun[schedulers.size()];
+    for (int i = 0; i < schedulers.size(); ++i) {
+      int index = i;
+      String name = schedulers.get(i).getName();
+      if (chartPrefix != null) {
+        writers[i] = openSegmentWriter(chartPrefix, chartFormat, name);
+      }
+      if (isAscii) {
+        charts[i] = AsciiChart.forTerminal();
+      }
+      metrics[i] = ScheduleMetrics.streaming();
+      runs[i] = schedulers.get(i).start(new ClusterListener() {
+        @Override
+        public void onCluster(Cluster cluster) {
+          clusterCounts[index] += 1;
+          metrics[index].onCluster(cluster);
+          if (writers[index] != null) {
+            writers[index].onCluster(cluster);
+          }
+          if (charts[index] != null) {
+            charts[index].onCluster(cluster);
+          }
+        }
+
+        @Override
+        public void onContextSwitch(int core, int startTime, int endTime) {
+          metrics[index].onContextSwitch(core, startTime, endTime);
+          if (writers[index] != null) {
+            writers[index].onContextSwitch(core, startTime, endTime);
+          }
+          if (charts[index] != null) {
+            charts[index].onContextSwitch(core, startTime, endTime);
+          }
+        }
+      });
+    }
+    long start = System.nanoTime();
+    Consumer<Process> feed = process -> {
+      // Processes arriving before time 0 are never admitted, as in batch mode
+      if (process.getArrivalTime() < 0) { return; }
+      for (SchedulerRun run : runs) {
+        run.submit(process);
+      }
+    };
+    if (generator != null) {
+      generator.forEach(feed);
+    } else {
+      TraceLoader.forEach(Paths.get(trace), feed);
+    }
+    for (int i = 0; i < schedulers.size(); ++i) {
+      runs[i].finish();
+      if (writers[i] != null) {
+        writers[i].close();
+      }
+      System.out.printf("%s: %d clusters, avg waiting %.3f, avg turnaround %.3f, avg response %.3f%n",
+          schedulers.get(i).getName(), clusterCounts[i], metrics[i].getAvgWaitingTime(),
+          metrics[i].getAvgTurnAroundTime(), metrics[i].getAvgResponseTime());
+      if (charts[i] != null) {
+        System.out.print(charts[i].render());
+      }
+    }
+    ArrayList<String> names = new ArrayList<>();
+    ArrayList<LatencySummary> summaries = new ArrayList<>();
+    for (int i = 0; i < schedulers.size(); ++i) {
+      names.add(schedulers.get(i).getName());
+      summaries.add(metrics[i].getSummary());
+    }
+    LatencySummary.print(names, summaries);
+    if (SchedulerCounters.ENABLED) {
+      SchedulerCounters.print(System.out);
+    }
+    System.out.printf("Streamed in %.1f ms%n", (System.nanoTime() - start) / 1e6);
+  }
+
+  // serve [--port P] [--workers W] [--batch B] [--queue Q] [--max-body L] [--cache-mb M] [--cache-dir D]
+  //       [--cache-disk-mb N]
+  // Runs the simulation service on localhost until the process is killed, see SimulationServer. At most Q
+  // requests wait for a worker, 4 * W * B by default. A trace over L bytes, 64 MiB by default, answers 413.
+  // With --cache-mb, charts of repeated traces are kept in M megabytes of memory, then in up to N megabytes
+  // of D if given, 1024 by default
+  private static void serve(String[] args) throws IOException {
+    int port = 8080;
+    int workerCount = Runtime.getRuntime().availableProcessors();
+    int maxBatch = 64;
+    int maxQueued = 0;
+    int maxBodyBytes = SimulationServer.DEFAULT_MAX_BODY_BYTES;
+    long cacheMegabytes = 0;
+    Path cacheDirectory = null;
+    long cacheDiskMegabytes = 1024;
+    for (int i = 1; i + 1 < args.length; i += 2) {
+      switch (args[i]) {
+        case "--port": port = Integer.parseInt(args[i + 1]); break;
+        case "--workers": workerCount = Integer.parseInt(args[i + 1]); break;
+        case "--batch": maxBatch = Integer.parseInt(args[i + 1]); break;
+        case "--queue": maxQueued = Integer.parseInt(args[i + 1]); break;
+        case "--max-body": maxBodyBytes = Integer.parseInt(args[i + 1]); break;
+        case "--cache-mb": cacheMegabytes = Long.parseLong(args[i + 1]); break;
+        case "--cache-dir": cacheDirectory = Paths.get(args[i + 1]); break;
+        case "--cache-disk-mb": cacheDiskMegabytes = Long.parseLong(args[i + 1]); break;
+        default: throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+    }
+    ResultCache cache = cacheMegabytes > 0 ? new ResultCache(cacheMegabytes << 20, cacheDirectory, cacheDiskMegabytes << 20) : null;
+    SimulationServer server = new SimulationServer(port, workerCount, maxBatch,
+        maxQueued > 0 ? maxQueued : 4 * workerCount * maxBatch, maxBodyBytes, cache);
+    if (cache != null) {
+      Runtime.getRuntime().addShutdownHook(new Thread(cache::flush));
+    }
+    server.start();
+    System.out.println("Listening on http://localhost:" + server.getPort() + "/simulate");
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length > 0) {
+      switch (args[0]) {
+        case "serve":
+          serve(args);
+          return;
+        case "generate":
+          generate(args);
+          return;
+        case "sweep":
+          sweep(args);
+          return;
+        case "check-split":
+          checkSplit(args);
+          return;
+        case "compare":
+        case "stream":
+          compare(args, args[0].equals("stream"));
+          return;
+        case "convert": // convert IN OUT, rewrite a CSV trace in the compact binary format
+          try (TraceWriter writer = TraceWriter.binary(Paths.get(args[2]))) {
+            TraceLoader.forEach(Paths.get(args[1]), writer);
+          }
+          return;
+        default:
+          break;
+      }
+    }
+    int n = IntInput("Number of processes: ");
+    int q = IntInput("Round Robin Time quantum: ");
+    int c = IntInput("Context Switching Time: ");
+    ArrayList<Process> processes = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      System.out.println("Enter process " + (i + 1) + ":");
+      String name = StringInput("Process name: ");
+      int arrivalTime = IntInput("Arrival time: ");
+      int burstTime = IntInput("Burst time: ");
+      int priority = IntInput("Priority: ");
+      processes.add(new Process(name, arrivalTime, burstTime, priority));
+    }
+//    Test Case
+//    int n = 4;
+//    int q = 4;
+//    int c = 2;
+//    ArrayList<Process> processes = new ArrayList<>();
+//    processes.add(new Process("P1", 0, 17, 4));
+//    processes.add(new Process("P2", 3, 6, 9));
+//    processes.add(new Process("P3", 4, 10, 2));
+//    processes.add(new Process("P4", 29, 4, 8));
+    ArrayList<Scheduler> schedulers = SchedulerFactory.getAllSchedulers(q, c);
+    ComparisonReport report = new ComparisonRunner().run(schedulers, Workload.of(processes));
+    for (SchedulerResult result : report.getResults()) {
+      System.out.println(result.getName());
+      result.getChart().print();
+    }
+    report.print();
+  }
+}
+
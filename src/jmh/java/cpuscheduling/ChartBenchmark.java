@@ -0,0 +1,44 @@
+package cpuscheduling;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Chart construction from the clusters of a round robin run, made beforehand. Stops at a million
+// processes, the cluster list of bigger runs doesn't fit the heap
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ChartBenchmark {
+  @Param({"10", "1000", "100000", "1000000"})
+  int count;
+
+  @Param({"uniform", "heavy-tailed", "bimodal"})
+  String burstShape;
+
+  @Param({"0", "4"})
+  double burstiness;
+
+  @Param({"1", "10", "1000"})
+  int prioritySpread;
+
+  private ArrayList<Cluster> clusters;
+
+  @Setup(Level.Trial)
+  public void schedule() {
+    Process[] processes = new BenchmarkWorkload(count, BurstShape.valueOf(burstShape.toUpperCase().replace('-', '_')),
+        burstiness, prioritySpread, 0).generate();
+    clusters = new ArrayList<>();
+    SchedulerRun run = new RoundRobinScheduler(4, AgFactorSource.seeded(0)).start(clusters::add);
+    for (Process process : processes) {
+      run.submit(process);
+    }
+    run.finish();
+  }
+
+  @Benchmark
+  public ScheduleMetrics chart() {
+    return new Chart(clusters).getMetrics();
+  }
+
+}
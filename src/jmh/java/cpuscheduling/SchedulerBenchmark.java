@@ -0,0 +1,63 @@
+package cpuscheduling;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// One operation schedules a whole synthetic workload, so processes/s is the score times the count.
+// Run with -prof gc (the default of the jmh task) for the allocation rate and bytes per operation
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class SchedulerBenchmark {
+  @Param({"10", "1000", "100000", "1000000", "10000000"})
+  int count;
+
+  @Param({"uniform", "heavy-tailed", "bimodal"})
+  String burstShape;
+
+  @Param({"0", "4"})
+  double burstiness;
+
+  @Param({"1", "10", "1000"})
+  int prioritySpread;
+
+  private Process[] processes;
+
+  @Setup(Level.Trial)
+  public void generate() {
+    processes = new BenchmarkWorkload(count, BurstShape.valueOf(burstShape.toUpperCase().replace('-', '_')),
+        burstiness, prioritySpread, 0).generate();
+  }
+
+  // Clusters are counted, not kept, so memory stays bounded by the waiting processes
+  static long feed(Scheduler scheduler, Process[] processes) {
+    long[] clusterCount = new long[1];
+    SchedulerRun run = scheduler.start(cluster -> clusterCount[0] += 1);
+    for (Process process : processes) {
+      run.submit(process);
+    }
+    run.finish();
+    return clusterCount[0];
+  }
+
+  @Benchmark
+  public long sjf() {
+    return feed(new SjfScheduler(0), processes);
+  }
+
+  @Benchmark
+  public long srtf() {
+    return feed(new SrtfScheduler(), processes);
+  }
+
+  @Benchmark
+  public long priority() {
+    return feed(new PriorityScheduler(), processes);
+  }
+
+  @Benchmark
+  public long rr() {
+    return feed(new RoundRobinScheduler(4, AgFactorSource.seeded(0)), processes);
+  }
+
+}